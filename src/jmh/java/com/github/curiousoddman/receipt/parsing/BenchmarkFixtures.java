@@ -0,0 +1,95 @@
+package com.github.curiousoddman.receipt.parsing;
+
+import com.github.curiousoddman.receipt.parsing.config.DebugConfig;
+import com.github.curiousoddman.receipt.parsing.config.OcrEngineConfig;
+import com.github.curiousoddman.receipt.parsing.config.PathsConfig;
+import com.github.curiousoddman.receipt.parsing.config.PreprocessingConfig;
+import com.github.curiousoddman.receipt.parsing.model.OriginFile;
+import com.github.curiousoddman.receipt.parsing.ocr.*;
+import com.github.curiousoddman.receipt.parsing.ocr.tsv.TsvParser;
+import com.github.curiousoddman.receipt.parsing.utils.PathsUtils;
+import nu.pattern.OpenCV;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Fixtures shared by the benchmarks. {@link #main} OCRs the end-to-end test receipt into {@link #DIR},
+ * which is what the {@code jmhFixtures} Gradle task runs before {@code jmh}.
+ */
+public class BenchmarkFixtures {
+    public static final Path   DIR      = Path.of("build", "jmh-fixtures");
+    public static final String PDF_NAME = "e2e.pdf";
+
+    public static void main(String[] args) throws Exception {
+        Path pdfFile = Path.of(args[0]);
+        OpenCV.loadLocally();
+        PathsUtils pathsUtils = pathsUtils();
+        try (OcrEnginePool ocrEnginePool = new OcrEnginePool(pathsUtils.getTesseractModelPath(), new OcrEngineConfig())) {
+            DebugConfig debugConfig = new DebugConfig();
+            // The rendered image is the input of the preprocessing benchmarks
+            debugConfig.setSaveRenderedImages(true);
+            new OcrService(pathsUtils, new TsvParser(), debugConfig, ocrEnginePool, new OcrEngineConfig(), new PreprocessingConfig()).getCachedOrDoOcr(pdfFile);
+        }
+    }
+
+    public static Path find(String suffix) {
+        try (Stream<Path> files = Files.walk(DIR)) {
+            return files
+                    .filter(file -> file.getFileName().toString().endsWith(suffix))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No *" + suffix + " fixture in " + DIR.toAbsolutePath() + ", run ./gradlew jmhFixtures"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static OcrCacheEntry readCacheEntry(Path file) {
+        return OcrCacheEntry.read(file).orElseThrow(() -> new IllegalStateException("Unreadable OCR cache file " + file));
+    }
+
+    public static OcrResult cachedOcrResult() {
+        Path preprocessedTiff = find(OcrCache.PREPROCESSED_IMAGE_FILE);
+        OcrImageSession imageSession = new OcrImageSession(preprocessedTiff);
+        imageSession.getPages();
+        OcrCacheEntry cacheEntry = readCacheEntry(find(OcrCache.OCR_FILE));
+        return new OcrResult(
+                new OriginFile(Path.of(PDF_NAME), find(OcrCache.IMAGE_FILE), preprocessedTiff),
+                cacheEntry.plainText(),
+                cacheEntry.columns().toOcrTsvResult(),
+                imageSession
+        );
+    }
+
+    /**
+     * OCR service whose region re-OCR never reaches Tesseract, so benchmarks measure only the parsing code.
+     */
+    public static OcrService stubOcrService(TsvParser tsvParser) {
+        PathsUtils pathsUtils = pathsUtils();
+        OcrEngineConfig ocrEngineConfig = new OcrEngineConfig();
+        ocrEngineConfig.setRegionCacheEnabled(false);
+        OcrEnginePool ocrEnginePool = new OcrEnginePool(pathsUtils.getTesseractModelPath(), ocrEngineConfig);
+        return new OcrService(pathsUtils, tsvParser, new DebugConfig(), ocrEnginePool, ocrEngineConfig, new PreprocessingConfig()) {
+            @Override
+            public String doOCR(OcrConfig ocrConfig) {
+                return "";
+            }
+
+            @Override
+            public List<String> doOCR(List<OcrConfig> ocrConfigs) {
+                return Collections.nCopies(ocrConfigs.size(), "");
+            }
+        };
+    }
+
+    private static PathsUtils pathsUtils() {
+        PathsConfig pathsConfig = new PathsConfig();
+        pathsConfig.setCachesRoot(DIR.toAbsolutePath().toString());
+        return new PathsUtils(pathsConfig);
+    }
+}
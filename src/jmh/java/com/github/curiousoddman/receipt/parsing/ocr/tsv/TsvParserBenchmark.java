@@ -0,0 +1,76 @@
+package com.github.curiousoddman.receipt.parsing.ocr.tsv;
+
+import com.github.curiousoddman.receipt.parsing.ocr.OcrCacheEntry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TsvParserBenchmark {
+    @Param("build/jmh-fixtures")
+    public String tsvDir;
+
+    private final TsvParser       tsvParser       = new TsvParser();
+    private final LegacyTsvParser legacyTsvParser = new LegacyTsvParser();
+
+    private List<String> tsvContents;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (Stream<Path> files = Files.walk(Path.of(tsvDir))) {
+            tsvContents = files
+                    .map(TsvParserBenchmark::readTsv)
+                    .flatMap(Optional::stream)
+                    .toList();
+        }
+        if (tsvContents.isEmpty()) {
+            throw new IllegalStateException("No cached .tsv or .ocr files found in " + Path.of(tsvDir).toAbsolutePath());
+        }
+    }
+
+    @Benchmark
+    public void streaming(Blackhole blackhole) {
+        for (String tsv : tsvContents) {
+            blackhole.consume(tsvParser.parse(tsv));
+        }
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        for (String tsv : tsvContents) {
+            blackhole.consume(legacyTsvParser.parse(tsv));
+        }
+    }
+
+    private static Optional<String> readTsv(Path file) {
+        String fileName = file.getFileName().toString();
+        if (fileName.endsWith(".tsv")) {
+            return Optional.of(readString(file));
+        }
+        if (fileName.endsWith(OcrCacheEntry.EXTENSION)) {
+            return OcrCacheEntry.read(file).map(cacheEntry -> cacheEntry.columns().toTsv());
+        }
+        return Optional.empty();
+    }
+
+    private static String readString(Path file) {
+        try {
+            return Files.readString(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.curiousoddman.receipt.parsing.parsing.receipt.rimi;
+
+import com.github.curiousoddman.receipt.parsing.BenchmarkFixtures;
+import com.github.curiousoddman.receipt.parsing.ocr.OcrResult;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.github.curiousoddman.receipt.parsing.utils.Patterns.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RimiContextBenchmark {
+    private OcrResult ocrResult;
+
+    @Setup
+    public void setUp() {
+        ocrResult = BenchmarkFixtures.cachedOcrResult();
+    }
+
+    @Benchmark
+    public void getLinesMatching(Blackhole blackhole) {
+        RimiContext context = newContext();
+        blackhole.consume(context.getLinesMatching(PAYMENT_SUM));
+        blackhole.consume(context.getLinesMatching(TOTAL_CARD_AMOUNT));
+        blackhole.consume(context.getLinesMatching(BANK_CARD_PAYMENT_AMOUNT));
+        blackhole.consume(context.getLinesMatching(SAVINGS_AMOUNT_SEARCH));
+        blackhole.consume(context.getLinesMatching(RECEIPT_TIME_PATTERN));
+    }
+
+    @Benchmark
+    public void getLinesBetween(Blackhole blackhole) {
+        RimiContext context = newContext();
+        blackhole.consume(context.getLinesBetween("KLIENTS:", "Maksājumu karte"));
+        blackhole.consume(context.getLinesBetween("ATLAIDES", "Tavs ietaupījums"));
+    }
+
+    private RimiContext newContext() {
+        return new RimiContext(ocrResult.originFile(), ocrResult.ocrTsvResult(), null, ocrResult.imageSession());
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.curiousoddman.receipt.parsing.parsing.receipt.rimi;
+
+import com.github.curiousoddman.receipt.parsing.BenchmarkFixtures;
+import com.github.curiousoddman.receipt.parsing.config.PipelineConfig;
+import com.github.curiousoddman.receipt.parsing.model.Receipt;
+import com.github.curiousoddman.receipt.parsing.ocr.OcrResult;
+import com.github.curiousoddman.receipt.parsing.ocr.OcrService;
+import com.github.curiousoddman.receipt.parsing.ocr.tsv.TsvParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RimiText2ReceiptBenchmark {
+    private final TsvParser      tsvParser      = new TsvParser();
+    private final PipelineConfig pipelineConfig = new PipelineConfig();
+
+    @Param({"false", "true"})
+    private boolean parallelFieldExtraction;
+
+    private RimiText2Receipt rimiText2Receipt;
+    private OcrResult        ocrResult;
+    private OcrService       ocrService;
+
+    @Setup
+    public void setUp() {
+        pipelineConfig.setParallelFieldExtraction(parallelFieldExtraction);
+        rimiText2Receipt = new RimiText2Receipt(new ReceiptNumberExtractionChain(tsvParser), pipelineConfig);
+        ocrResult = BenchmarkFixtures.cachedOcrResult();
+        ocrService = BenchmarkFixtures.stubOcrService(tsvParser);
+    }
+
+    @Benchmark
+    public Receipt parse() {
+        return rimiText2Receipt.parse(BenchmarkFixtures.PDF_NAME, ocrResult, ocrService);
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.curiousoddman.receipt.parsing.utils;
+
+import com.github.curiousoddman.receipt.parsing.model.MyBigDecimal;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.github.curiousoddman.receipt.parsing.utils.Patterns.MONEY_AMOUNT;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConversionUtilsBenchmark {
+    @Param({"56,15", "-0, 46", "1,076", "EUR"})
+    public String text;
+
+    @Benchmark
+    public boolean isFormatValid() {
+        return ConversionUtils.isFormatValid(MONEY_AMOUNT, text);
+    }
+
+    @Benchmark
+    public MyBigDecimal toMyBigDecimal() {
+        return ConversionUtils.toMyBigDecimal(text);
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.curiousoddman.receipt.parsing.utils;
+
+import com.github.curiousoddman.receipt.parsing.BenchmarkFixtures;
+import com.github.curiousoddman.receipt.parsing.config.PreprocessingConfig;
+import com.github.curiousoddman.receipt.parsing.ocr.ImagePreprocessor;
+import com.github.curiousoddman.receipt.parsing.ocr.OcrCache;
+import nu.pattern.OpenCV;
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageUtilsBenchmark {
+    private Path              convertedTiff;
+    private Path              targetTiff;
+    private BufferedImage     renderedImage;
+    private BufferedImage     preprocessedImage;
+    private ImagePreprocessor imagePreprocessor;
+    private ImagePreprocessor lineSpacingPreprocessor;
+    private Mat               thresholdedImage;
+
+    @Setup
+    public void setUp() throws IOException {
+        OpenCV.loadLocally();
+        convertedTiff = BenchmarkFixtures.find(OcrCache.IMAGE_FILE);
+        targetTiff = Files.createTempFile("ImageUtilsBenchmark", ".tiff");
+        renderedImage = ImageIO.read(convertedTiff.toFile());
+        imagePreprocessor = new ImagePreprocessor(new PreprocessingConfig());
+        PreprocessingConfig lineSpacingConfig = new PreprocessingConfig();
+        lineSpacingConfig.setLineSpacing(30);
+        lineSpacingPreprocessor = new ImagePreprocessor(lineSpacingConfig);
+        Mat grayImage = ImageUtils.toGrayMat(renderedImage);
+        thresholdedImage = imagePreprocessor.process(grayImage);
+        grayImage.release();
+        preprocessedImage = ImageIO.read(BenchmarkFixtures.find(OcrCache.PREPROCESSED_IMAGE_FILE).toFile());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(targetTiff);
+        thresholdedImage.release();
+    }
+
+    @Benchmark
+    public void doImagePreprocessing() {
+        imagePreprocessor.process(convertedTiff, targetTiff);
+    }
+
+    @Benchmark
+    public long doImagePreprocessingInMemory() {
+        Mat grayImage = ImageUtils.toGrayMat(renderedImage);
+        Mat preprocessed = imagePreprocessor.process(grayImage);
+        long total = preprocessed.total();
+        grayImage.release();
+        preprocessed.release();
+        return total;
+    }
+
+    @Benchmark
+    public long addSpaceBetweenLines() {
+        // Thresholding an already binary image keeps it as is, the rest of the time is the line spacing stage
+        Mat spaced = lineSpacingPreprocessor.process(thresholdedImage);
+        long total = spaced.total();
+        spaced.release();
+        return total;
+    }
+
+    @Benchmark
+    public BufferedImage getImageWithLineWithMostBlackPixels() {
+        return ImageUtils.getImageWithLineWithMostBlackPixels(preprocessedImage);
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.curiousoddman.receipt.parsing.validation;
+
+import com.github.curiousoddman.receipt.parsing.BenchmarkFixtures;
+import com.github.curiousoddman.receipt.parsing.config.PipelineConfig;
+import com.github.curiousoddman.receipt.parsing.model.Receipt;
+import com.github.curiousoddman.receipt.parsing.ocr.tsv.TsvParser;
+import com.github.curiousoddman.receipt.parsing.parsing.receipt.rimi.ReceiptNumberExtractionChain;
+import com.github.curiousoddman.receipt.parsing.parsing.receipt.rimi.RimiText2Receipt;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidatorsBenchmark {
+    private final List<ReceiptValidator> receiptValidators = List.of(
+            new DiscountListAmountValidator(),
+            new ItemNumbersValidator(),
+            new TotalAmountValidator(),
+            new TotalDiscountAmountValidator(),
+            new TotalPaymentAmountValidator()
+    );
+
+    private Receipt receipt;
+
+    @Setup
+    public void setUp() {
+        TsvParser tsvParser = new TsvParser();
+        receipt = new RimiText2Receipt(new ReceiptNumberExtractionChain(tsvParser), new PipelineConfig()).parse(
+                BenchmarkFixtures.PDF_NAME,
+                BenchmarkFixtures.cachedOcrResult(),
+                BenchmarkFixtures.stubOcrService(tsvParser)
+        );
+    }
+
+    @Benchmark
+    public void validateAll(Blackhole blackhole) {
+        for (ReceiptValidator receiptValidator : receiptValidators) {
+            blackhole.consume(receiptValidator.validate(receipt));
+        }
+    }
+}
@@ -1,99 +1,101 @@
 package com.github.curiousoddman.receipt.parsing;
 
-import com.github.curiousoddman.receipt.parsing.model.Receipt;
-import com.github.curiousoddman.receipt.parsing.ocr.OcrResult;
-import com.github.curiousoddman.receipt.parsing.ocr.OcrServiceProvider;
-import com.github.curiousoddman.receipt.parsing.parsing.receipt.rimi.RimiText2Receipt;
+import com.github.curiousoddman.receipt.parsing.config.PipelineConfig;
+import com.github.curiousoddman.receipt.parsing.config.TuningConfig;
+import com.github.curiousoddman.receipt.parsing.pipeline.InputDirWatcher;
+import com.github.curiousoddman.receipt.parsing.pipeline.ReceiptManifest;
+import com.github.curiousoddman.receipt.parsing.pipeline.ReceiptPipeline;
+import com.github.curiousoddman.receipt.parsing.pipeline.ReceiptProcessor;
+import com.github.curiousoddman.receipt.parsing.pipeline.StagedPipeline;
+import com.github.curiousoddman.receipt.parsing.pipeline.VirtualThreadPipeline;
+import com.github.curiousoddman.receipt.parsing.tuning.ThresholdSweep;
 import com.github.curiousoddman.receipt.parsing.utils.PathsUtils;
 import com.github.curiousoddman.receipt.parsing.validation.ValidationExecutor;
 import com.github.curiousoddman.receipt.parsing.validation.ValidationStatsCollector;
 import lombok.RequiredArgsConstructor;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import org.slf4j.MDC;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.stereotype.Component;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
-import static com.github.curiousoddman.receipt.parsing.utils.JsonUtils.OBJECT_WRITER;
-
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class App implements ApplicationRunner {
-    private static final int MAX_PARALLEL_THREADS = 5;
-
-    private final RimiText2Receipt   rimiText2Receipt;
-    private final IgnoreList         ignoreList;
-    private final Whitelist          whitelist;
+    private final ReceiptProcessor   receiptProcessor;
+    private final ReceiptManifest    receiptManifest;
     private final ValidationExecutor validationExecutor;
-    private final OcrServiceProvider ocrServiceProvider;
+    private final PipelineConfig     pipelineConfig;
     private final PathsUtils         pathsUtils;
+    private final TuningConfig       tuningConfig;
+    private final ThresholdSweep     thresholdSweep;
 
     @Override
     public void run(ApplicationArguments args) throws Exception {
+        if (tuningConfig.isEnabled()) {
+            thresholdSweep.run();
+            return;
+        }
+
         ValidationStatsCollector validationStatsCollector = new ValidationStatsCollector();
-        try (Stream<Path> files = Files.list(pathsUtils.getPdfInputDir())) {
-            List<Path> allPdfFiles = files.filter(PathsUtils::isPdfFile).toList();
-            if (MAX_PARALLEL_THREADS == 0) {
-                for (Path pdfFile : allPdfFiles) {
-                    safeTransformFile(pdfFile, validationStatsCollector);
+        ReceiptPipeline pipeline = switch (pipelineConfig.getMode()) {
+            case STAGED -> new StagedPipeline(receiptProcessor, pipelineConfig, validationStatsCollector);
+            case VIRTUAL_THREADS -> new VirtualThreadPipeline(receiptProcessor, pipelineConfig, validationStatsCollector);
+        };
+        // Watch mode saves from its poll loop, batch runs save now and then so an interrupted run keeps its progress
+        ScheduledExecutorService checkpoints = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "checkpoints"));
+        if (!pipelineConfig.isWatch()) {
+            long checkpointMillis = pipelineConfig.getCheckpointInterval().toMillis();
+            checkpoints.scheduleWithFixedDelay(this::saveCompletedResults, checkpointMillis, checkpointMillis, TimeUnit.MILLISECONDS);
+        }
+        try {
+            if (pipelineConfig.isWatch()) {
+                try (InputDirWatcher watcher = new InputDirWatcher(pathsUtils.getPdfInputDir(),
+                                                                   pipelineConfig.getWatchQuietPeriod(),
+                                                                   pipeline::submit,
+                                                                   this::saveCompletedResults)) {
+                    watcher.run();
                 }
             } else {
-                ExecutorService executorService = Executors.newFixedThreadPool(MAX_PARALLEL_THREADS);
-                for (Path pdfFile : allPdfFiles) {
-                    executorService.submit(() -> safeTransformFile(pdfFile, validationStatsCollector));
-                }
-                executorService.shutdown();
-                while (!executorService.awaitTermination(60, TimeUnit.SECONDS)) {
-                    log.info("Still running...");
+                try (Stream<Path> files = Files.list(pathsUtils.getPdfInputDir())) {
+                    files.filter(PathsUtils::isPdfFile).forEach(pipeline::submit);
                 }
             }
+        } finally {
+            try {
+                pipeline.awaitCompletion();
+            } finally {
+                checkpoints.shutdownNow();
+            }
         }
 
-        validationExecutor.saveResult(pathsUtils.getValidationResultPath());
+        saveValidationResult();
+        receiptManifest.save();
     }
 
-    private void safeTransformFile(Path pdfFile, ValidationStatsCollector validationStatsCollector) {
-        try {
-            transformFile(pdfFile, validationStatsCollector);
-        } catch (Exception e) {
-            log.error("Unexpected error", e);
+    private void saveCompletedResults() {
+        if (receiptManifest.saveIfChanged()) {
+            saveValidationResult();
         }
     }
 
-    @SneakyThrows
-    private void transformFile(Path pdfFile, ValidationStatsCollector validationStatsCollector) {
-        String sourcePdfName = pdfFile.toFile().getName();
-        MDC.put("file", sourcePdfName);
-
-        if (ignoreList.isIgnored(sourcePdfName)) {
-            log.info("Skipping file {} due to ignore list", sourcePdfName);
-            return;
-        }
-
-        if (!whitelist.isWhitelisted(sourcePdfName)) {
-            return;
+    /**
+     * Checkpoints write the same file as the end of the run, so a full run that is interrupted never leaves
+     * results of earlier runs mixed in.
+     */
+    private void saveValidationResult() {
+        if (pipelineConfig.isIncremental() || pipelineConfig.isWatch()) {
+            validationExecutor.mergeResult(pathsUtils.getValidationResultPath());
+        } else {
+            validationExecutor.saveResult(pathsUtils.getValidationResultPath());
         }
-
-        log.info("Starting...");
-
-        OcrResult ocrResult = ocrServiceProvider.get().getCachedOrDoOcr(pdfFile);
-        Receipt receipt = rimiText2Receipt.parse(sourcePdfName, ocrResult, ocrServiceProvider.get());
-
-        String receiptJson = OBJECT_WRITER.writeValueAsString(receipt);
-        Files.writeString(ocrResult.cacheDir().resolve(sourcePdfName + ".json"), receiptJson);
-
-        validationExecutor.execute(validationStatsCollector, receipt);
-        log.info("Completed");
     }
 }
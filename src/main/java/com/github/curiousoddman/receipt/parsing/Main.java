@@ -1,6 +1,5 @@
 package com.github.curiousoddman.receipt.parsing;
 
-import nu.pattern.OpenCV;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
@@ -8,7 +7,6 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 public class Main {
 
     public static void main(String[] args) {
-        OpenCV.loadLocally();
         SpringApplication.run(Main.class, args);
     }
 }
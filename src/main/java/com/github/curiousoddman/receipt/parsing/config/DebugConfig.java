@@ -9,4 +9,5 @@ import org.springframework.stereotype.Component;
 @ConfigurationProperties("debug")
 public class DebugConfig {
     private boolean saveReOcrAreaImages;
+    private boolean saveRenderedImages;
 }
@@ -0,0 +1,19 @@
+package com.github.curiousoddman.receipt.parsing.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties("config.ocr")
+public class OcrEngineConfig {
+    private int      poolSize            = Runtime.getRuntime().availableProcessors();
+    private Duration idleTimeout         = Duration.ofMinutes(5);
+    private boolean  regionCacheEnabled  = true;
+    private DataSize regionCacheInMemory = DataSize.ofMegabytes(16);
+    private DataSize regionCacheOnDisk   = DataSize.ofMegabytes(512);
+}
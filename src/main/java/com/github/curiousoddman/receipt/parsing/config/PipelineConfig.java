@@ -0,0 +1,32 @@
+package com.github.curiousoddman.receipt.parsing.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties("config.pipeline")
+public class PipelineConfig {
+    private Mode     mode                    = Mode.STAGED;
+    private boolean  incremental             = false;
+    private boolean  watch                   = false;
+    private Duration watchQuietPeriod        = Duration.ofSeconds(2);
+    private Duration checkpointInterval      = Duration.ofMinutes(1);
+    private int      renderThreads           = 2;
+    private int      preprocessThreads       = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int      ocrThreads              = Runtime.getRuntime().availableProcessors();
+    private int      parseThreads            = 2;
+    private int      writeThreads            = 2;
+    private int      queueCapacity           = 16;
+    private int      cpuThreads              = Runtime.getRuntime().availableProcessors();
+    private int      maxInFlight             = 1000;
+    private boolean  parallelFieldExtraction = false;
+
+    public enum Mode {
+        STAGED,
+        VIRTUAL_THREADS
+    }
+}
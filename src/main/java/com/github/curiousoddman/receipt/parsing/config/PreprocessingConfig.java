@@ -0,0 +1,41 @@
+package com.github.curiousoddman.receipt.parsing.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties("config.preprocessing")
+public class PreprocessingConfig {
+    private boolean       deskew            = false;
+    private double        maxSkewDegrees    = 5;
+    private int           medianBlurSize    = 0;
+    private ThresholdMode thresholdMode     = ThresholdMode.GLOBAL;
+    private int           threshold         = 190;
+    private int           adaptiveBlockSize = 31;
+    private double        adaptiveOffset    = 10;
+    private int           lineSpacing       = 0;
+
+    /**
+     * OpenCV only rejects these sizes on the first image it preprocesses, check them when the settings are bound.
+     */
+    @PostConstruct
+    public void validate() {
+        if (medianBlurSize != 0 && (medianBlurSize <= 1 || medianBlurSize % 2 == 0)) {
+            throw new IllegalArgumentException("config.preprocessing.median-blur-size must be 0 to disable or an odd number greater than 1, was " + medianBlurSize);
+        }
+        boolean adaptive = thresholdMode == ThresholdMode.ADAPTIVE_MEAN || thresholdMode == ThresholdMode.ADAPTIVE_GAUSSIAN;
+        if (adaptive && (adaptiveBlockSize <= 1 || adaptiveBlockSize % 2 == 0)) {
+            throw new IllegalArgumentException("config.preprocessing.adaptive-block-size must be an odd number greater than 1, was " + adaptiveBlockSize);
+        }
+    }
+
+    public enum ThresholdMode {
+        GLOBAL,
+        OTSU,
+        ADAPTIVE_MEAN,
+        ADAPTIVE_GAUSSIAN
+    }
+}
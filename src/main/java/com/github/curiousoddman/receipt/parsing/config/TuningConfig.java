@@ -0,0 +1,17 @@
+package com.github.curiousoddman.receipt.parsing.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties("config.tuning")
+public class TuningConfig {
+    private boolean enabled       = false;
+    private int     sampleSize    = 20;
+    private int     thresholdFrom = 170;
+    private int     thresholdTo   = 210;
+    private int     thresholdStep = 4;
+    private int     parallelism   = Runtime.getRuntime().availableProcessors();
+}
@@ -0,0 +1,195 @@
+package com.github.curiousoddman.receipt.parsing.ocr;
+
+import com.github.curiousoddman.receipt.parsing.config.PreprocessingConfig;
+import com.github.curiousoddman.receipt.parsing.utils.ImageUtils;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.opencv.core.*;
+import org.opencv.imgproc.Imgproc;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import static org.opencv.imgcodecs.Imgcodecs.IMREAD_GRAYSCALE;
+import static org.opencv.imgproc.Imgproc.*;
+
+/**
+ * Turns a grayscale receipt image into the binary image that is OCRed, entirely on OpenCV Mats. Stages run in the
+ * order deskew, denoise, threshold and line spacing, each one is timed. The default {@link PreprocessingConfig}
+ * is the plain global threshold at 190 that receipts were always preprocessed with.
+ */
+@Slf4j
+public class ImagePreprocessor {
+    private final List<Stage>            stages     = new ArrayList<>();
+    private final Map<String, LongAdder> stageNanos = new ConcurrentHashMap<>();
+    private final LongAdder              imageCount = new LongAdder();
+    @Getter
+    private final String                 fingerprint;
+
+    public ImagePreprocessor(PreprocessingConfig config) {
+        config.validate();
+        if (config.isDeskew()) {
+            stages.add(new Stage("deskew", "deskew=" + config.getMaxSkewDegrees(), mat -> deskew(mat, config.getMaxSkewDegrees())));
+        }
+        if (config.getMedianBlurSize() > 1) {
+            stages.add(new Stage("denoise", "median=" + config.getMedianBlurSize(), mat -> {
+                Mat dstMat = new Mat();
+                Imgproc.medianBlur(mat, dstMat, config.getMedianBlurSize());
+                return dstMat;
+            }));
+        }
+        stages.add(thresholdStage(config));
+        if (config.getLineSpacing() > 0) {
+            stages.add(new Stage("lineSpacing", "linespacing=" + config.getLineSpacing(), mat -> addSpaceBetweenLines(mat, config.getLineSpacing())));
+        }
+        fingerprint = "grayscale," + stages.stream().map(Stage::fingerprint).collect(Collectors.joining(","));
+    }
+
+    /**
+     * Runs every stage on the 8-bit grayscale image, which is left untouched. The caller owns the returned Mat.
+     */
+    public Mat process(Mat grayMat) {
+        Mat mat = grayMat;
+        for (Stage stage : stages) {
+            long start = System.nanoTime();
+            Mat result = stage.operation().apply(mat);
+            stageNanos.computeIfAbsent(stage.name(), k -> new LongAdder()).add(System.nanoTime() - start);
+            if (mat != grayMat && result != mat) {
+                mat.release();
+            }
+            mat = result;
+        }
+        imageCount.increment();
+        return mat;
+    }
+
+    /**
+     * Preprocesses an image file, read as grayscale, into the target file.
+     */
+    public void process(Path sourceImage, Path targetImage) {
+        Mat grayMat = ImageUtils.loadImage(sourceImage.toAbsolutePath().toString(), IMREAD_GRAYSCALE);
+        Mat preprocessed = process(grayMat);
+        ImageUtils.saveImage(preprocessed, targetImage.toAbsolutePath().toString());
+        grayMat.release();
+        preprocessed.release();
+    }
+
+    /**
+     * Average time per image of every stage.
+     */
+    public String getTimings() {
+        long images = imageCount.sum();
+        if (images == 0) {
+            return "no images";
+        }
+        return stages.stream()
+                     .map(stage -> String.format("%s=%.1fms", stage.name(), stageNanos.getOrDefault(stage.name(), new LongAdder()).sum() / 1e6 / images))
+                     .collect(Collectors.joining(", ", images + " images, ", ""));
+    }
+
+    private static Stage thresholdStage(PreprocessingConfig config) {
+        return switch (config.getThresholdMode()) {
+            case GLOBAL -> new Stage("threshold", "threshold=" + config.getThreshold() + ",maxval=255,THRESH_BINARY", mat -> {
+                Mat dstMat = new Mat(mat.rows(), mat.cols(), mat.type());
+                Imgproc.threshold(mat, dstMat, config.getThreshold(), 255, THRESH_BINARY);
+                return dstMat;
+            });
+            case OTSU -> new Stage("threshold", "threshold=otsu,maxval=255,THRESH_BINARY", mat -> {
+                Mat dstMat = new Mat(mat.rows(), mat.cols(), mat.type());
+                Imgproc.threshold(mat, dstMat, 0, 255, THRESH_BINARY | THRESH_OTSU);
+                return dstMat;
+            });
+            case ADAPTIVE_MEAN, ADAPTIVE_GAUSSIAN -> {
+                int method = config.getThresholdMode() == PreprocessingConfig.ThresholdMode.ADAPTIVE_MEAN
+                             ? ADAPTIVE_THRESH_MEAN_C
+                             : ADAPTIVE_THRESH_GAUSSIAN_C;
+                yield new Stage("threshold",
+                                "adaptive=" + config.getThresholdMode() + ",block=" + config.getAdaptiveBlockSize() + ",offset=" + config.getAdaptiveOffset(),
+                                mat -> {
+                                    Mat dstMat = new Mat(mat.rows(), mat.cols(), mat.type());
+                                    Imgproc.adaptiveThreshold(mat, dstMat, 255, method, THRESH_BINARY, config.getAdaptiveBlockSize(), config.getAdaptiveOffset());
+                                    return dstMat;
+                                });
+            }
+        };
+    }
+
+    /**
+     * Rotates the image so the text lines are horizontal. The angle comes from the minimum area rectangle around
+     * the dark pixels, angles above the limit are taken as a misdetection and left alone.
+     */
+    private static Mat deskew(Mat mat, double maxSkewDegrees) {
+        Mat inverted = new Mat();
+        Imgproc.threshold(mat, inverted, 0, 255, THRESH_BINARY_INV | THRESH_OTSU);
+        Mat points = new Mat();
+        Core.findNonZero(inverted, points);
+        inverted.release();
+        if (points.empty()) {
+            return mat;
+        }
+        MatOfPoint2f points2f = new MatOfPoint2f();
+        points.convertTo(points2f, CvType.CV_32FC2);
+        points.release();
+        double angle = Imgproc.minAreaRect(points2f).angle;
+        points2f.release();
+        // minAreaRect reports the angle in (0, 90]
+        if (angle > 45) {
+            angle -= 90;
+        }
+        if (Math.abs(angle) < 0.1 || Math.abs(angle) > maxSkewDegrees) {
+            return mat;
+        }
+        log.debug("Deskewing by {} degrees", angle);
+        Mat rotation = Imgproc.getRotationMatrix2D(new Point(mat.cols() / 2.0, mat.rows() / 2.0), angle, 1);
+        Mat dstMat = new Mat();
+        Imgproc.warpAffine(mat, dstMat, rotation, mat.size(), INTER_LINEAR, Core.BORDER_CONSTANT, new Scalar(255));
+        rotation.release();
+        return dstMat;
+    }
+
+    /**
+     * Inserts blank rows between text lines found by the row projection of the binary image.
+     */
+    private static Mat addSpaceBetweenLines(Mat mat, int lineSpacing) {
+        Mat rowMinimums = new Mat();
+        Core.reduce(mat, rowMinimums, 1, Core.REDUCE_MIN);
+        byte[] minimums = new byte[mat.rows()];
+        rowMinimums.get(0, 0, minimums);
+        rowMinimums.release();
+
+        List<int[]> lines = new ArrayList<>();
+        int lineStart = -1;
+        for (int row = 0; row <= minimums.length; row++) {
+            boolean isWhite = row == minimums.length || minimums[row] == (byte) 255;
+            if (!isWhite && lineStart < 0) {
+                lineStart = row;
+            } else if (isWhite && lineStart >= 0) {
+                lines.add(new int[]{lineStart, row});
+                lineStart = -1;
+            }
+        }
+        if (lines.size() <= 1) {
+            return mat;
+        }
+
+        Mat dstMat = new Mat(mat.rows() + lines.size() * lineSpacing, mat.cols(), mat.type(), new Scalar(255));
+        for (int i = 0; i < lines.size(); i++) {
+            int[] line = lines.get(i);
+            int targetStart = line[0] + i * lineSpacing;
+            mat.rowRange(line[0], line[1]).copyTo(dstMat.rowRange(targetStart, targetStart + line[1] - line[0]));
+        }
+        return dstMat;
+    }
+
+    private record Stage(String name,
+                         String fingerprint,
+                         UnaryOperator<Mat> operation) {
+
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.curiousoddman.receipt.parsing.ocr;
+
+import com.github.curiousoddman.receipt.parsing.utils.FileUtils;
+import lombok.Getter;
+import lombok.SneakyThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Content addressed OCR cache. An entry directory is named after the SHA-256 of the PDF bytes and a fingerprint
+ * of everything that affects the OCR output, so renamed copies of a receipt share one entry and changed
+ * settings or model never reuse a stale one.
+ */
+public class OcrCache {
+    public static final String IMAGE_FILE              = "receipt.tiff";
+    public static final String PREPROCESSED_IMAGE_FILE = "receipt.preprocessed.tiff";
+    public static final String OCR_FILE                = "receipt" + OcrCacheEntry.EXTENSION;
+
+    @Getter
+    private final Path                   root;
+    @Getter
+    private final String                 settingsFingerprint;
+    private final Map<String, EntryLock> entryLocks = new ConcurrentHashMap<>();
+
+    public OcrCache(Path root, String... settings) {
+        this.root = root;
+        this.settingsFingerprint = fingerprint(settings);
+    }
+
+    /**
+     * Directory of the entry, it is only created by {@link #createEntryDir} once something is written to it.
+     */
+    public Path getEntryDir(byte[] pdfChecksum) {
+        String pdfHash = FileUtils.toHex(pdfChecksum);
+        return root
+                .resolve(pdfHash.substring(0, 2))
+                .resolve(pdfHash + '-' + settingsFingerprint);
+    }
+
+    /**
+     * Name of the entry directory, unique for the PDF content and OCR settings.
+     */
+    public static String getEntryId(Path entryDir) {
+        return entryDir.getFileName().toString();
+    }
+
+    @SneakyThrows
+    public static void createEntryDir(Path entryDir) {
+        Files.createDirectories(entryDir);
+    }
+
+    /**
+     * Waits until no other job works on an entry of the same PDF content. The returned action releases the entry
+     * and may run on another thread than the one that locked it. A lock is dropped once nobody holds or waits for it.
+     */
+    public Runnable lockEntry(byte[] pdfChecksum) {
+        String pdfHash = FileUtils.toHex(pdfChecksum);
+        EntryLock lock = entryLocks.compute(pdfHash, (k, existing) -> {
+            EntryLock entryLock = existing != null ? existing : new EntryLock();
+            entryLock.users++;
+            return entryLock;
+        });
+        lock.semaphore.acquireUninterruptibly();
+        return () -> {
+            lock.semaphore.release();
+            entryLocks.computeIfPresent(pdfHash, (k, entryLock) -> --entryLock.users == 0 ? null : entryLock);
+        };
+    }
+
+    /**
+     * Directory of the cache layout used before content addressing, named after the file name up to the first dot.
+     */
+    public Path getLegacyEntryDir(Path pdfFile) {
+        String fileName = pdfFile.getFileName().toString();
+        return root.resolve(fileName.substring(0, fileName.indexOf('.')));
+    }
+
+    @SneakyThrows
+    private static String fingerprint(String... settings) {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(("ocr-cache-v" + OcrCacheEntry.VERSION).getBytes(StandardCharsets.UTF_8));
+        for (String setting : settings) {
+            digest.update((byte) '\n');
+            digest.update(setting.getBytes(StandardCharsets.UTF_8));
+        }
+        return FileUtils.toHex(digest.digest()).substring(0, 16);
+    }
+
+    /**
+     * Users are only counted inside map operations on the lock's key, which the map runs atomically.
+     */
+    private static class EntryLock {
+        private final Semaphore semaphore = new Semaphore(1);
+        private int             users;
+    }
+}
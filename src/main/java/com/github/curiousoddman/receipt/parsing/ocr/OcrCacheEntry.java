@@ -0,0 +1,96 @@
+package com.github.curiousoddman.receipt.parsing.ocr;
+
+import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.ColumnarOcrTsvResult;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Single file OCR cache entry of one receipt: magic, format version, SHA-256 of the source PDF,
+ * plain text and the TSV rows in {@link ColumnarOcrTsvResult} layout.
+ */
+@Slf4j
+public record OcrCacheEntry(byte[] pdfChecksum,
+                            String plainText,
+                            ColumnarOcrTsvResult columns) {
+    public static final String EXTENSION = ".ocr";
+    public static final int    VERSION   = 1;
+
+    private static final int MAGIC = 0x524F4352;
+
+    @SneakyThrows
+    public static Optional<OcrCacheEntry> read(Path file) {
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try {
+            // Read to the heap: a mapping would keep the file open until GC and block replacing it on Windows
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt() != MAGIC) {
+                log.warn("Ignoring {}, not an OCR cache file", file);
+                return Optional.empty();
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                log.info("Ignoring {}, cache format version {} instead of {}", file, version, VERSION);
+                return Optional.empty();
+            }
+            byte[] pdfChecksum = new byte[readLength(buffer, Byte.BYTES)];
+            buffer.get(pdfChecksum);
+            byte[] plainText = new byte[readLength(buffer, Byte.BYTES)];
+            buffer.get(plainText);
+            ColumnarOcrTsvResult columns = ColumnarOcrTsvResult.readFrom(buffer);
+            return Optional.of(new OcrCacheEntry(pdfChecksum, new String(plainText, StandardCharsets.UTF_8), columns));
+        } catch (RuntimeException e) {
+            log.warn("Ignoring unreadable OCR cache file {}", file, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Reads an element count and checks that the buffer still holds that many elements, so a corrupt length
+     * is reported as an unreadable file instead of allocating a huge array.
+     */
+    private static int readLength(ByteBuffer buffer, int elementBytes) {
+        int length = buffer.getInt();
+        if (length < 0 || (long) length * elementBytes > buffer.remaining()) {
+            throw new IllegalStateException("Invalid length " + length + " with " + buffer.remaining() + " bytes left");
+        }
+        return length;
+    }
+
+    @SneakyThrows
+    public void write(Path file) {
+        byte[] plainTextBytes = plainText.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(4 * Integer.BYTES + pdfChecksum.length + plainTextBytes.length + columns.getSerializedSize());
+        buffer.putInt(MAGIC)
+              .putInt(VERSION)
+              .putInt(pdfChecksum.length)
+              .put(pdfChecksum)
+              .putInt(plainTextBytes.length)
+              .put(plainTextBytes);
+        columns.writeTo(buffer);
+        buffer.flip();
+
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public boolean isFor(byte[] checksum) {
+        return Arrays.equals(pdfChecksum, checksum);
+    }
+}
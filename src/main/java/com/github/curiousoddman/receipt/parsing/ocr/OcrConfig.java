@@ -2,7 +2,6 @@ package com.github.curiousoddman.receipt.parsing.ocr;
 
 import lombok.Builder;
 import lombok.Getter;
-import net.sourceforge.tess4j.ITessAPI;
 
 import java.awt.*;
 import java.nio.file.Path;
@@ -14,38 +13,54 @@ import static net.sourceforge.tess4j.ITessAPI.TessPageSegMode.PSM_AUTO_OSD;
 @Getter
 @Builder(builderMethodName = "hiddenBuilder")
 public class OcrConfig {
-    private final Path      tiffFile;
-    private final Rectangle ocrArea;
+    private final Path            tiffFile;
+    private final OcrImageSession imageSession;
+    private final Rectangle       ocrArea;
     @Builder.Default
-    private final boolean   ocrToTsv      = false;
+    private final boolean         ocrToTsv      = false;
     @Builder.Default
-    private final boolean   ocrDigitsOnly = false;
+    private final boolean         ocrDigitsOnly = false;
     @Builder.Default
-    private final int       pageSegMode   = PSM_AUTO_OSD;
+    private final int             pageSegMode   = PSM_AUTO_OSD;
     @Builder.Default
-    private final int       ocrEngineMode = OEM_LSTM_ONLY;
+    private final int             ocrEngineMode = OEM_LSTM_ONLY;
 
     public static OcrConfigBuilder builder(Path tiffFile) {
-        return hiddenBuilder().tiffFile(tiffFile);
+        return hiddenBuilder()
+                .tiffFile(tiffFile)
+                .imageSession(new OcrImageSession(tiffFile));
     }
 
-    public void apply(OcrService ocrService) {
-        ocrService.setVariable("tessedit_char_blacklist", "_—");
+    public static OcrConfigBuilder builder(OcrImageSession imageSession) {
+        return hiddenBuilder()
+                .tiffFile(imageSession.getImageFile())
+                .imageSession(imageSession);
+    }
+
+    public OcrEngineProfile getEngineProfile() {
         if (ocrDigitsOnly) {
-            ocrService.setPageSegMode(ITessAPI.TessPageSegMode.PSM_RAW_LINE);
-            ocrService.setOcrEngineMode(ITessAPI.TessOcrEngineMode.OEM_TESSERACT_ONLY);
-            ocrService.setVariable("tessedit_char_whitelist", "-.,0123456789");
+            return OcrEngineProfile.DIGITS_ONLY;
+        } else if (ocrArea != null) {
+            return OcrEngineProfile.SINGLE_BLOCK;
         } else {
+            return OcrEngineProfile.FULL_PAGE;
+        }
+    }
 
-            if (ocrArea != null) {
-                ocrService.setPageSegMode(ITessAPI.TessPageSegMode.PSM_SINGLE_BLOCK);
-                ocrService.setOcrEngineMode(ITessAPI.TessOcrEngineMode.OEM_DEFAULT);
-            } else {
-                ocrService.setPageSegMode(pageSegMode);
-                ocrService.setOcrEngineMode(ocrEngineMode);
-            }
+    public OcrEngineKey getEngineKey(String language) {
+        OcrEngineProfile profile = getEngineProfile();
+        if (profile == OcrEngineProfile.FULL_PAGE) {
+            return new OcrEngineKey(language, profile, ocrEngineMode);
+        }
+        return OcrEngineKey.of(language, profile);
+    }
 
-            ocrService.getProperties().remove("tessedit_char_whitelist");
+    public void apply(OcrEngine ocrEngine) {
+        OcrEngineProfile profile = getEngineProfile();
+        if (profile == OcrEngineProfile.FULL_PAGE) {
+            ocrEngine.setPageSegMode(pageSegMode);
+        } else {
+            ocrEngine.setPageSegMode(profile.getPageSegMode());
         }
     }
 }
@@ -0,0 +1,119 @@
+package com.github.curiousoddman.receipt.parsing.ocr;
+
+import com.sun.jna.Pointer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import net.sourceforge.tess4j.ITessAPI;
+import net.sourceforge.tess4j.TessAPI;
+
+import java.awt.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * One initialised Tesseract handle. Language, engine mode and the variables of its {@link OcrEngineProfile}
+ * are fixed for the lifetime of the handle, page segmentation mode is re-applied only when it changes.
+ */
+@Slf4j
+public class OcrEngine implements AutoCloseable {
+    private final TessAPI              api;
+    private final ITessAPI.TessBaseAPI handle;
+    @Getter
+    private final OcrEngineKey         key;
+    private final Map<String, String>  variables   = new HashMap<>();
+    private int                        pageSegMode = -1;
+    private OcrImagePage               imageOnHandle;
+    @Getter
+    private long                       lastUsedNanos;
+
+    OcrEngine(String datapath, OcrEngineKey key) {
+        this.key = key;
+        api = TessAPI.INSTANCE;
+        handle = api.TessBaseAPICreate();
+        if (api.TessBaseAPIInit2(handle, datapath, key.language(), key.ocrEngineMode()) != 0) {
+            api.TessBaseAPIDelete(handle);
+            throw new IllegalStateException("Failed to initialise Tesseract engine " + key);
+        }
+        key.profile().configure(this);
+        log.info("New Tesseract engine created: {}", key);
+    }
+
+    public void setVariable(String name, String value) {
+        if (!Objects.equals(variables.get(name), value)) {
+            api.TessBaseAPISetVariable(handle, name, value);
+            variables.put(name, value);
+        }
+    }
+
+    public void setPageSegMode(int mode) {
+        if (pageSegMode != mode) {
+            api.TessBaseAPISetPageSegMode(handle, mode);
+            pageSegMode = mode;
+        }
+    }
+
+    public void setInputName(String inputName) {
+        if (inputName != null && !inputName.isEmpty()) {
+            api.TessBaseAPISetInputName(handle, inputName);
+        }
+    }
+
+    public void setImage(OcrImagePage page, Rectangle rect) {
+        if (page != imageOnHandle) {
+            api.TessBaseAPISetImage(handle, page.pixels(), page.width(), page.height(), page.bytesPerPixel(), page.bytesPerLine());
+            imageOnHandle = page;
+        }
+        // Pixels are already on the handle, so only the recognition area changes between calls
+        if (rect != null && !rect.isEmpty()) {
+            api.TessBaseAPISetRectangle(handle, rect.x, rect.y, rect.width, rect.height);
+        } else {
+            api.TessBaseAPISetRectangle(handle, 0, 0, page.width(), page.height());
+        }
+    }
+
+    public void recognize() {
+        if (api.TessBaseAPIRecognize(handle, null) != 0) {
+            throw new IllegalStateException("Tesseract recognition failed on engine " + key);
+        }
+    }
+
+    public String getUTF8Text() {
+        return toString(api.TessBaseAPIGetUTF8Text(handle));
+    }
+
+    public String getTsvText(int pageIndex) {
+        return toString(api.TessBaseAPIGetTsvText(handle, pageIndex));
+    }
+
+    void prepareForReuse() {
+        // Legacy engine adapts to what it has seen; start every borrow from the same state as a fresh handle
+        api.TessBaseAPIClearAdaptiveClassifier(handle);
+        imageOnHandle = null;
+    }
+
+    /**
+     * Drops the image and recognition results of the last borrow, so an idle engine holds no page in memory.
+     */
+    void clearImage() {
+        api.TessBaseAPIClear(handle);
+        imageOnHandle = null;
+    }
+
+    void markUsed() {
+        lastUsedNanos = System.nanoTime();
+    }
+
+    @Override
+    public void close() {
+        imageOnHandle = null;
+        api.TessBaseAPIDelete(handle);
+        log.info("Tesseract engine closed: {}", key);
+    }
+
+    private String toString(Pointer textPtr) {
+        String str = textPtr.getString(0);
+        api.TessDeleteText(textPtr);
+        return str;
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.curiousoddman.receipt.parsing.ocr;
+
+public record OcrEngineKey(String language,
+                           OcrEngineProfile profile,
+                           int ocrEngineMode) {
+
+    public static OcrEngineKey of(String language, OcrEngineProfile profile) {
+        return new OcrEngineKey(language, profile, profile.getOcrEngineMode());
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.curiousoddman.receipt.parsing.ocr;
+
+import com.github.curiousoddman.receipt.parsing.config.OcrEngineConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+public class OcrEnginePool implements AutoCloseable {
+    private final String                              datapath;
+    private final int                                 maxSize;
+    private final long                                idleTimeoutNanos;
+    private final Map<OcrEngineKey, Deque<OcrEngine>> idleEngines = new HashMap<>();
+    private final ScheduledExecutorService            evictionExecutor;
+
+    private int     liveEngines;
+    private boolean closed;
+
+    public OcrEnginePool(String datapath, OcrEngineConfig ocrEngineConfig) {
+        this.datapath = datapath;
+        this.maxSize = Math.max(OcrEngineProfile.values().length, ocrEngineConfig.getPoolSize());
+        this.idleTimeoutNanos = ocrEngineConfig.getIdleTimeout().toNanos();
+        evictionExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ocr-engine-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodMillis = Math.max(1000, ocrEngineConfig.getIdleTimeout().toMillis());
+        evictionExecutor.scheduleWithFixedDelay(this::evictIdle, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public OcrEngine borrow(OcrEngineKey key) {
+        OcrEngine idleEngine = takeIdleOrReserve(key);
+        if (idleEngine != null) {
+            idleEngine.prepareForReuse();
+            return idleEngine;
+        }
+        try {
+            return new OcrEngine(datapath, key);
+        } catch (RuntimeException e) {
+            releaseReservation();
+            throw e;
+        }
+    }
+
+    public void preload(OcrEngineKey key) {
+        release(borrow(key));
+    }
+
+    public synchronized void release(OcrEngine engine) {
+        if (closed) {
+            engine.close();
+            liveEngines--;
+            return;
+        }
+        engine.clearImage();
+        engine.markUsed();
+        idleEngines.computeIfAbsent(engine.getKey(), k -> new ArrayDeque<>()).push(engine);
+        notifyAll();
+    }
+
+    public void invalidate(OcrEngine engine) {
+        try {
+            engine.close();
+        } finally {
+            releaseReservation();
+        }
+    }
+
+    @Override
+    public void close() {
+        evictionExecutor.shutdownNow();
+        synchronized (this) {
+            closed = true;
+            for (Deque<OcrEngine> engines : idleEngines.values()) {
+                for (OcrEngine engine : engines) {
+                    engine.close();
+                    liveEngines--;
+                }
+            }
+            idleEngines.clear();
+            notifyAll();
+        }
+    }
+
+    private synchronized OcrEngine takeIdleOrReserve(OcrEngineKey key) {
+        while (true) {
+            if (closed) {
+                throw new IllegalStateException("OCR engine pool is closed");
+            }
+            Deque<OcrEngine> engines = idleEngines.get(key);
+            if (engines != null && !engines.isEmpty()) {
+                return engines.pop();
+            }
+            if (liveEngines < maxSize || closeAnyIdle()) {
+                liveEngines++;
+                return null;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for OCR engine " + key, e);
+            }
+        }
+    }
+
+    private synchronized void releaseReservation() {
+        liveEngines--;
+        notifyAll();
+    }
+
+    private boolean closeAnyIdle() {
+        // Prefer surplus engines so every profile keeps its warm handle while possible
+        for (int keep = 1; keep >= 0; keep--) {
+            for (Deque<OcrEngine> engines : idleEngines.values()) {
+                if (engines.size() > keep) {
+                    engines.pollLast().close();
+                    liveEngines--;
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private synchronized void evictIdle() {
+        long now = System.nanoTime();
+        for (Deque<OcrEngine> engines : idleEngines.values()) {
+            Iterator<OcrEngine> iterator = engines.descendingIterator();
+            while (iterator.hasNext() && engines.size() > 1) {
+                OcrEngine engine = iterator.next();
+                if (now - engine.getLastUsedNanos() > idleTimeoutNanos) {
+                    log.info("Evicting idle Tesseract engine {}", engine.getKey());
+                    iterator.remove();
+                    engine.close();
+                    liveEngines--;
+                }
+            }
+        }
+    }
+}
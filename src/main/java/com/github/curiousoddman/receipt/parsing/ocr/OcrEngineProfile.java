@@ -0,0 +1,25 @@
+package com.github.curiousoddman.receipt.parsing.ocr;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import static net.sourceforge.tess4j.ITessAPI.TessOcrEngineMode.*;
+import static net.sourceforge.tess4j.ITessAPI.TessPageSegMode.*;
+
+@Getter
+@RequiredArgsConstructor
+public enum OcrEngineProfile {
+    DIGITS_ONLY(OEM_TESSERACT_ONLY, PSM_RAW_LINE, "-.,0123456789"),
+    SINGLE_BLOCK(OEM_DEFAULT, PSM_SINGLE_BLOCK, ""),
+    FULL_PAGE(OEM_LSTM_ONLY, PSM_AUTO_OSD, "");
+
+    private final int    ocrEngineMode;
+    private final int    pageSegMode;
+    private final String charWhitelist;
+
+    public void configure(OcrEngine ocrEngine) {
+        ocrEngine.setVariable("tessedit_char_blacklist", "_—");
+        ocrEngine.setVariable("tessedit_char_whitelist", charWhitelist);
+        ocrEngine.setPageSegMode(pageSegMode);
+    }
+}
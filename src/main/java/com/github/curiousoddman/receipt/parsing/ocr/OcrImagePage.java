@@ -0,0 +1,107 @@
+package com.github.curiousoddman.receipt.parsing.ocr;
+
+import com.sun.jna.Pointer;
+import net.sourceforge.tess4j.util.ImageIOHelper;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.nio.ByteBuffer;
+
+/**
+ * Pixels of one page in the layout Tesseract takes them. A page made from an OpenCV {@link Mat} uses the native
+ * memory of the Mat directly and releases the Mat when closed, instead of waiting for the GC to finalize it.
+ */
+public final class OcrImagePage implements AutoCloseable {
+    private final Object     pixelOwner;
+    private final ByteBuffer pixels;
+    private final int        width;
+    private final int        height;
+    private final int        bitsPerPixel;
+
+    private BufferedImage image;
+    private boolean       closed;
+
+    private OcrImagePage(Object pixelOwner, BufferedImage image, ByteBuffer pixels, int width, int height, int bitsPerPixel) {
+        this.pixelOwner = pixelOwner;
+        this.image = image;
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+        this.bitsPerPixel = bitsPerPixel;
+    }
+
+    public static OcrImagePage of(BufferedImage image) {
+        ByteBuffer pixels = ImageIOHelper.getImageByteBuffer(image);
+        DataBuffer dataBuffer = image.getData(new Rectangle(1, 1)).getDataBuffer();
+        int bitsPerPixel = dataBuffer instanceof DataBufferByte
+                           ? image.getColorModel().getPixelSize()
+                           : 8;
+        return new OcrImagePage(image, image, pixels, image.getWidth(), image.getHeight(), bitsPerPixel);
+    }
+
+    /**
+     * Wraps a continuous 8-bit single channel Mat without copying its pixels.
+     */
+    public static OcrImagePage of(Mat mat) {
+        if (mat.type() != CvType.CV_8UC1 || !mat.isContinuous()) {
+            throw new IllegalArgumentException("Expected continuous 8-bit grayscale image, got " + mat);
+        }
+        ByteBuffer pixels = new Pointer(mat.dataAddr()).getByteBuffer(0, mat.total());
+        return new OcrImagePage(mat, null, pixels, mat.cols(), mat.rows(), 8);
+    }
+
+    /**
+     * Image of the page, for a page made from a Mat the pixels are copied into a grayscale image on first use.
+     */
+    public synchronized BufferedImage image() {
+        if (image == null) {
+            checkOpen();
+            image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+            pixels.duplicate().rewind().get(((DataBufferByte) image.getRaster().getDataBuffer()).getData());
+        }
+        return image;
+    }
+
+    public synchronized ByteBuffer pixels() {
+        checkOpen();
+        return pixels;
+    }
+
+    public int bitsPerPixel() {
+        return bitsPerPixel;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int bytesPerPixel() {
+        return bitsPerPixel / 8;
+    }
+
+    public int bytesPerLine() {
+        return (int) Math.ceil(width() * bitsPerPixel / 8.0);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed && pixelOwner instanceof Mat mat) {
+            mat.release();
+        }
+        closed = true;
+    }
+
+    private void checkOpen() {
+        if (closed && pixelOwner instanceof Mat) {
+            throw new IllegalStateException("Pixels of the page were already released");
+        }
+    }
+}
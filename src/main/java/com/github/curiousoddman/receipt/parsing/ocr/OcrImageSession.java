@@ -0,0 +1,128 @@
+package com.github.curiousoddman.receipt.parsing.ocr;
+
+import lombok.Getter;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import net.sourceforge.tess4j.util.ImageIOHelper;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decoded pages of one receipt image. The image file is decoded on first use and the pixels are then
+ * shared by every OCR call made for the receipt. Closing the session releases native page memory right away.
+ */
+@Slf4j
+public class OcrImageSession implements AutoCloseable {
+    @Getter
+    private final Path          imageFile;
+    private final String        cacheEntryId;
+    private final AtomicInteger decodeCount = new AtomicInteger();
+
+    private List<OcrImagePage> pages;
+    private String             contentHash;
+
+    public OcrImageSession(Path imageFile) {
+        this(imageFile, null, null);
+    }
+
+    /**
+     * Session of the preprocessed image of an OCR cache entry, identified by the entry without reading the pixels.
+     */
+    public OcrImageSession(Path imageFile, String cacheEntryId) {
+        this(imageFile, cacheEntryId, null);
+    }
+
+    private OcrImageSession(Path imageFile, String cacheEntryId, List<OcrImagePage> pages) {
+        this.imageFile = imageFile;
+        this.cacheEntryId = cacheEntryId;
+        this.pages = pages;
+    }
+
+    public static OcrImageSession of(BufferedImage image) {
+        return of(null, null, OcrImagePage.of(image));
+    }
+
+    /**
+     * Session of a page already in memory, the image file is only used for debug output.
+     */
+    public static OcrImageSession of(Path imageFile, String cacheEntryId, OcrImagePage page) {
+        return new OcrImageSession(imageFile, cacheEntryId, List.of(page));
+    }
+
+    public synchronized List<OcrImagePage> getPages() {
+        if (pages == null) {
+            pages = decode();
+        }
+        return pages;
+    }
+
+    /**
+     * SHA-256 of the decoded pixels, so identical images get the same hash whatever file they came from.
+     */
+    @SneakyThrows
+    public synchronized String getContentHash() {
+        if (contentHash == null) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (OcrImagePage page : getPages()) {
+                digest.update(ByteBuffer.allocate(3 * Integer.BYTES).putInt(page.width()).putInt(page.height()).putInt(page.bitsPerPixel()).flip());
+                digest.update(page.pixels().duplicate().rewind());
+            }
+            contentHash = HexFormat.of().formatHex(digest.digest());
+        }
+        return contentHash;
+    }
+
+    /**
+     * Identifies the pixels for caching region results: the OCR cache entry the image belongs to, or the content
+     * hash for images without one.
+     */
+    public String getCacheId() {
+        return cacheEntryId != null ? "entry:" + cacheEntryId : getContentHash();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (pages != null) {
+            pages.forEach(OcrImagePage::close);
+            // A file backed session decodes again if it is still used, an in-memory one fails on its closed pages
+            if (imageFile != null) {
+                pages = null;
+            }
+        }
+    }
+
+    public int getDecodeCount() {
+        return decodeCount.get();
+    }
+
+    @SneakyThrows
+    private List<OcrImagePage> decode() {
+        decodeCount.incrementAndGet();
+        log.debug("Decoding {}", imageFile);
+        File file = imageFile.toFile();
+        String imageFileFormat = ImageIOHelper.getImageFileFormat(file);
+        ImageReader reader = ImageIO.getImageReadersByFormatName(imageFileFormat).next();
+        try (ImageInputStream iis = ImageIO.createImageInputStream(file)) {
+            reader.setInput(iis);
+            int imageTotal = reader.getNumImages(true);
+            List<OcrImagePage> result = new ArrayList<>(imageTotal);
+            for (int i = 0; i < imageTotal; i++) {
+                result.add(OcrImagePage.of(reader.read(i, reader.getDefaultReadParam())));
+            }
+            return result;
+        } finally {
+            reader.dispose();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.curiousoddman.receipt.parsing.ocr;
+
+import com.github.curiousoddman.receipt.parsing.model.OriginFile;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Full page OCR of one PDF split into render, preprocess and recognize steps, so they can run on different threads.
+ * Holds the cache entry lock of the PDF content until closed.
+ */
+@Getter
+@RequiredArgsConstructor
+public class OcrJob implements AutoCloseable {
+    private final OriginFile    originFile;
+    private final byte[]        pdfChecksum;
+    @Getter(AccessLevel.NONE)
+    private final Runnable      entryUnlock;
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    private BufferedImage   renderedImage;
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    private OcrImageSession imageSession;
+    private OcrResult       result;
+
+    void complete(OcrResult result) {
+        this.result = result;
+    }
+
+    public boolean isDone() {
+        return result != null;
+    }
+
+    /**
+     * Releases the pages decoded for the receipt. Called once parsing is done, which is after {@link #close()}.
+     */
+    public void releaseImage() {
+        renderedImage = null;
+        if (imageSession != null) {
+            imageSession.close();
+        }
+        if (result != null && result.imageSession() != null) {
+            result.imageSession().close();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            entryUnlock.run();
+        }
+    }
+}
@@ -5,7 +5,10 @@ import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.OcrTsvResult;
 
 import java.nio.file.Path;
 
-public record OcrResult(OriginFile originFile, String plainText, OcrTsvResult ocrTsvResult) {
+public record OcrResult(OriginFile originFile,
+                        String plainText,
+                        OcrTsvResult ocrTsvResult,
+                        OcrImageSession imageSession) {
     public Path cacheDir() {
         return originFile.preprocessedTiff().getParent();
     }
@@ -1,123 +1,244 @@
 package com.github.curiousoddman.receipt.parsing.ocr;
 
 import com.github.curiousoddman.receipt.parsing.config.DebugConfig;
+import com.github.curiousoddman.receipt.parsing.config.OcrEngineConfig;
+import com.github.curiousoddman.receipt.parsing.config.PreprocessingConfig;
 import com.github.curiousoddman.receipt.parsing.model.OriginFile;
 import com.github.curiousoddman.receipt.parsing.ocr.tsv.TsvParser;
+import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.ColumnarOcrTsvResult;
 import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.OcrTsvResult;
+import com.github.curiousoddman.receipt.parsing.utils.FileUtils;
 import com.github.curiousoddman.receipt.parsing.utils.ImageUtils;
 import com.github.curiousoddman.receipt.parsing.utils.PathsUtils;
-import com.sun.jna.Pointer;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import net.sourceforge.tess4j.ITessAPI;
-import net.sourceforge.tess4j.TessAPI;
-import net.sourceforge.tess4j.Tesseract;
 import net.sourceforge.tess4j.TesseractException;
-import net.sourceforge.tess4j.util.ImageIOHelper;
+import org.opencv.core.Mat;
 
-import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
-import javax.imageio.ImageReader;
-import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
-import java.awt.image.RenderedImage;
-import java.io.File;
-import java.io.IOException;
-import java.lang.reflect.Field;
+import java.awt.image.BufferedImage;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Iterator;
-import java.util.Properties;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 
-import static com.github.curiousoddman.receipt.parsing.utils.ImageUtils.getImageFile;
 import static com.github.curiousoddman.receipt.parsing.utils.ImageUtils.saveFileWithRectangle;
-import static com.github.curiousoddman.receipt.parsing.utils.JsonUtils.OBJECT_WRITER;
 
 @Slf4j
-public class OcrService extends Tesseract {
-    private final PathsUtils  pathsUtils;
-    private final TsvParser   tsvParser;
-    private final DebugConfig debugConfig;
+public class OcrService {
+    public static final String LANGUAGE = "lav";
 
+    private final TsvParser         tsvParser;
+    private final DebugConfig       debugConfig;
+    private final OcrEnginePool     ocrEnginePool;
+    private final OcrCache          ocrCache;
+    private final RegionOcrCache    regionOcrCache;
+    private final ImagePreprocessor imagePreprocessor;
+    private boolean                 enginesPreloaded;
+
+    public OcrService(PathsUtils pathsUtils,
+                      TsvParser tsvParser,
+                      DebugConfig debugConfig,
+                      OcrEnginePool ocrEnginePool,
+                      OcrEngineConfig ocrEngineConfig,
+                      PreprocessingConfig preprocessingConfig) {
+        this(pathsUtils, tsvParser, debugConfig, ocrEnginePool, ocrEngineConfig, preprocessingConfig, ocrEngineConfig.isRegionCacheEnabled());
+    }
+
+    /**
+     * @param regionCacheEnabled overrides the region cache setting of the config, for callers whose regions are
+     *                           never looked up again
+     */
     @SneakyThrows
-    public OcrService(PathsUtils pathsUtils, TsvParser tsvParser, DebugConfig debugConfig) {
-        this.pathsUtils = pathsUtils;
+    public OcrService(PathsUtils pathsUtils,
+                      TsvParser tsvParser,
+                      DebugConfig debugConfig,
+                      OcrEnginePool ocrEnginePool,
+                      OcrEngineConfig ocrEngineConfig,
+                      PreprocessingConfig preprocessingConfig,
+                      boolean regionCacheEnabled) {
         this.tsvParser = tsvParser;
         this.debugConfig = debugConfig;
-        Files.createDirectories(ocrCachesRoot(pathsUtils));
-        setDatapath(pathsUtils.getTesseractModelPath());
-        setLanguage("lav");
+        this.ocrEnginePool = ocrEnginePool;
+        this.imagePreprocessor = new ImagePreprocessor(preprocessingConfig);
+        Path cachesRoot = pathsUtils.getCachesRoot().resolve("cache");
+        Files.createDirectories(cachesRoot);
+        this.ocrCache = new OcrCache(cachesRoot, getOcrSettings(pathsUtils, imagePreprocessor));
+        log.info("OCR cache settings fingerprint {}", ocrCache.getSettingsFingerprint());
+        this.regionOcrCache = regionCacheEnabled
+                              ? new RegionOcrCache(pathsUtils.getCachesRoot().resolve("region-cache"),
+                                                   ocrCache.getSettingsFingerprint(),
+                                                   ocrEngineConfig.getRegionCacheInMemory().toBytes(),
+                                                   ocrEngineConfig.getRegionCacheOnDisk().toBytes())
+                              : null;
     }
 
-    @SneakyThrows
     public OcrResult getCachedOrDoOcr(Path pdfFile) {
-        Path pdfFileName = pdfFile.getFileName();
-        Path newRoot = getSubdirectoryPath(pdfFile);
-        Path textCacheFilePath = newRoot.resolve(pdfFileName + ".txt");
-        Path tsvCacheFilePath = newRoot.resolve(pdfFileName + ".tsv");
-        Path imageCacheFilePath = newRoot.resolve(pdfFileName + ".tiff");
-        Path preprocessedImagePath = newRoot.resolve(pdfFileName + ".preprocessed.tiff");
-        Path tsvDocumentFilePath = newRoot.resolve(pdfFileName + ".tsv.json");
-        OriginFile originFile = new OriginFile(pdfFile, imageCacheFilePath, preprocessedImagePath);
-        if (Files.exists(textCacheFilePath) && Files.exists(tsvCacheFilePath)) {
-            return new OcrResult(
-                    originFile,
-                    Files.readString(textCacheFilePath),
-                    tsvParser.parse(Files.readString(tsvCacheFilePath))
-            );
+        try (OcrJob ocrJob = startOcr(pdfFile)) {
+            render(ocrJob);
+            preprocess(ocrJob);
+            return recognize(ocrJob);
+        }
+    }
+
+    /**
+     * Locks the cache entry of the PDF content and completes the job right away when the entry is cached.
+     * Identical PDFs delivered under different names wait for each other and share one entry.
+     */
+    public OcrJob startOcr(Path pdfFile) {
+        return startOcr(pdfFile, FileUtils.sha256(pdfFile));
+    }
+
+    public OcrJob startOcr(Path pdfFile, byte[] pdfChecksum) {
+        Runnable entryUnlock = ocrCache.lockEntry(pdfChecksum);
+        try {
+            Path entryDir = ocrCache.getEntryDir(pdfChecksum);
+            Path preprocessedImagePath = entryDir.resolve(OcrCache.PREPROCESSED_IMAGE_FILE);
+            OriginFile originFile = new OriginFile(pdfFile, entryDir.resolve(OcrCache.IMAGE_FILE), preprocessedImagePath);
+            OcrJob ocrJob = new OcrJob(originFile, pdfChecksum, entryUnlock);
+
+            OcrCacheEntry
+                    .read(entryDir.resolve(OcrCache.OCR_FILE))
+                    .filter(entry -> entry.isFor(pdfChecksum))
+                    .or(() -> migrateLegacyEntry(pdfFile, pdfChecksum, entryDir))
+                    .ifPresent(cacheEntry -> ocrJob.complete(new OcrResult(
+                            originFile,
+                            cacheEntry.plainText(),
+                            cacheEntry.columns().toOcrTsvResult(),
+                            new OcrImageSession(preprocessedImagePath, OcrCache.getEntryId(entryDir))
+                    )));
+            return ocrJob;
+        } catch (RuntimeException e) {
+            entryUnlock.run();
+            throw e;
+        }
+    }
+
+    /**
+     * Renders the PDF in memory unless the preprocessed image of the entry is already cached.
+     */
+    @SneakyThrows
+    public void render(OcrJob ocrJob) {
+        OriginFile originFile = ocrJob.getOriginFile();
+        if (!ocrJob.isDone() && !Files.exists(originFile.preprocessedTiff())) {
+            BufferedImage renderedImage = ImageUtils.renderPdf(originFile.pdf());
+            OcrCache.createEntryDir(originFile.preprocessedTiff().getParent());
+            if (debugConfig.isSaveRenderedImages()) {
+                ImageIO.write(renderedImage, "tiff", originFile.convertedTiff().toFile());
+            }
+            ocrJob.setRenderedImage(renderedImage);
+        }
+    }
+
+    /**
+     * Preprocesses the rendered image in memory. The result is still written to the entry, as parsing re-OCRs
+     * regions of cached receipts from it.
+     */
+    public void preprocess(OcrJob ocrJob) {
+        BufferedImage renderedImage = ocrJob.getRenderedImage();
+        if (!ocrJob.isDone() && renderedImage != null) {
+            Path preprocessedTiff = ocrJob.getOriginFile().preprocessedTiff();
+            Mat grayImage = ImageUtils.toGrayMat(renderedImage);
+            ocrJob.setRenderedImage(null);
+            Mat preprocessedImage = imagePreprocessor.process(grayImage);
+            grayImage.release();
+            ImageUtils.saveImage(preprocessedImage, preprocessedTiff.toAbsolutePath().toString());
+            ocrJob.setImageSession(OcrImageSession.of(preprocessedTiff, OcrCache.getEntryId(preprocessedTiff.getParent()), OcrImagePage.of(preprocessedImage)));
         }
+    }
+
+    @SneakyThrows
+    public OcrResult recognize(OcrJob ocrJob) {
+        if (!ocrJob.isDone()) {
+            preloadEngines();
+            OriginFile originFile = ocrJob.getOriginFile();
+            OcrImageSession imageSession = ocrJob.getImageSession() != null
+                                           ? ocrJob.getImageSession()
+                                           : new OcrImageSession(originFile.preprocessedTiff(), OcrCache.getEntryId(originFile.preprocessedTiff().getParent()));
+            OcrConfig ocrConfig = OcrConfig.builder(imageSession).build();
+            OcrResult tessResult = doMyOCR(ocrConfig, originFile);
+            new OcrCacheEntry(ocrJob.getPdfChecksum(), tessResult.plainText(), ColumnarOcrTsvResult.of(tessResult.ocrTsvResult()))
+                    .write(originFile.preprocessedTiff().resolveSibling(OcrCache.OCR_FILE));
+            ocrJob.complete(tessResult);
+        }
+        return ocrJob.getResult();
+    }
 
-        if (!Files.exists(imageCacheFilePath)) {
-            File imageFile = getImageFile(pdfFile.toFile());
-            Files.copy(imageFile.toPath(), imageCacheFilePath);
+    /**
+     * Warms up an engine of every profile on the first cache miss, re-OCR of receipt regions usually follows.
+     */
+    private synchronized void preloadEngines() {
+        if (!enginesPreloaded) {
+            for (OcrEngineProfile profile : OcrEngineProfile.values()) {
+                ocrEnginePool.preload(OcrEngineKey.of(LANGUAGE, profile));
+            }
+            enginesPreloaded = true;
         }
+    }
 
-        if (!Files.exists(preprocessedImagePath)) {
-            ImageUtils.doImagePreprocessing(imageCacheFilePath, preprocessedImagePath);
+    /**
+     * Moves a receipt cached under the old file name based layout into its content addressed entry.
+     */
+    @SneakyThrows
+    private Optional<OcrCacheEntry> migrateLegacyEntry(Path pdfFile, byte[] pdfChecksum, Path entryDir) {
+        Path legacyDir = ocrCache.getLegacyEntryDir(pdfFile);
+        String pdfFileName = pdfFile.getFileName().toString();
+        Optional<OcrCacheEntry> legacyEntry = OcrCacheEntry
+                .read(legacyDir.resolve(pdfFileName + OcrCacheEntry.EXTENSION))
+                .filter(entry -> entry.isFor(pdfChecksum));
+        Path textCacheFilePath = legacyDir.resolve(pdfFileName + ".txt");
+        Path tsvCacheFilePath = legacyDir.resolve(pdfFileName + ".tsv");
+        if (legacyEntry.isEmpty() && Files.exists(textCacheFilePath) && Files.exists(tsvCacheFilePath)) {
+            legacyEntry = Optional.of(new OcrCacheEntry(
+                    pdfChecksum,
+                    Files.readString(textCacheFilePath),
+                    tsvParser.parseColumnar(Files.readString(tsvCacheFilePath))
+            ));
+        }
+        if (legacyEntry.isEmpty()) {
+            return legacyEntry;
         }
 
-        OcrConfig ocrConfig = OcrConfig.builder(originFile.preprocessedTiff()).build();
-        OcrResult tessResult = doMyOCR(ocrConfig, originFile);
-        Files.writeString(textCacheFilePath, tessResult.plainText());
-        Files.writeString(tsvCacheFilePath, tessResult.ocrTsvResult().getTsvFileContents());
-        Files.writeString(tsvDocumentFilePath, OBJECT_WRITER.writeValueAsString(tessResult.ocrTsvResult()));
-        return tessResult;
+        log.info("Migrating cached OCR of {} from {} to {}", pdfFileName, legacyDir, entryDir);
+        OcrCache.createEntryDir(entryDir);
+        copyIfMissing(legacyDir.resolve(pdfFileName + ".tiff"), entryDir.resolve(OcrCache.IMAGE_FILE));
+        copyIfMissing(legacyDir.resolve(pdfFileName + ".preprocessed.tiff"), entryDir.resolve(OcrCache.PREPROCESSED_IMAGE_FILE));
+        legacyEntry.get().write(entryDir.resolve(OcrCache.OCR_FILE));
+        return legacyEntry;
     }
 
     public OcrResult doMyOCR(OcrConfig ocrConfig, OriginFile originFile) throws TesseractException {
         try {
-            ocrConfig.apply(this);
-            File tiffFile = ocrConfig.getTiffFile().toFile();
-            String tiffFilePath = ocrConfig.getTiffFile().toAbsolutePath().toString();
-            String imageFileFormat = ImageIOHelper.getImageFileFormat(tiffFile);
-            Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName(imageFileFormat);
-            ImageReader reader = readers.next();
+            OcrImageSession imageSession = ocrConfig.getImageSession();
+            String inputName = getInputName(ocrConfig);
             StringBuilder plainTextResult = new StringBuilder();
             StringBuilder tsvTextResult = new StringBuilder();
-            try (ImageInputStream iis = ImageIO.createImageInputStream(tiffFile)) {
-                reader.setInput(iis);
-                int imageTotal = reader.getNumImages(true);
-
-                init();
-                setVariables();
+            List<OcrImagePage> pages = imageSession.getPages();
 
-                for (int i = 0; i < imageTotal; i++) {
-                    IIOImage oimage = reader.readAll(i, reader.getDefaultReadParam());
-                    plainTextResult.append(doOCR(oimage, tiffFilePath, i + 1, false, null));
-                    tsvTextResult.append(doOCR(oimage, tiffFilePath, i + 1, true, null));
+            withEngine(ocrConfig, engine -> {
+                for (int i = 0; i < pages.size(); i++) {
+                    engine.setImage(pages.get(i), null);
+                    engine.setInputName(inputName);
+                    // Both outputs are rendered from the same recognition result
+                    engine.recognize();
+                    plainTextResult.append(engine.getUTF8Text());
+                    tsvTextResult.append(engine.getTsvText(i));
                 }
-
-            } finally {
-                reader.dispose();
-                dispose();
-            }
+            });
 
             OcrTsvResult ocrTsvResult = tsvParser.parse(tsvTextResult.toString());
 
             return new OcrResult(
                     originFile,
                     plainTextResult.toString(),
-                    ocrTsvResult
+                    ocrTsvResult,
+                    imageSession
             );
         } catch (Exception e) {
             log.error(e.getMessage(), e);
@@ -125,29 +246,112 @@ public class OcrService extends Tesseract {
         }
     }
 
-    @Override
-    public String doOCR(File inputFile, Rectangle rect) {
-        throw new UnsupportedOperationException();
+    public String doOCR(OcrConfig ocrConfig) throws TesseractException {
+        saveReOcrAreaImage(ocrConfig);
+
+        if (regionOcrCache == null) {
+            return doRegionOCR(ocrConfig);
+        }
+        String key = regionOcrCache.getKey(ocrConfig);
+        Optional<String> cachedResult = regionOcrCache.get(key);
+        if (cachedResult.isPresent()) {
+            return cachedResult.get();
+        }
+        String result = doRegionOCR(ocrConfig);
+        regionOcrCache.put(key, result);
+        return result;
     }
 
-    @SneakyThrows
-    public Properties getProperties() {
+    /**
+     * OCRs several regions at once and returns the results in the order of the configs. Regions missing from the
+     * region cache are grouped by engine profile and image, so every group borrows one engine, puts each image on it
+     * once and only moves the recognition rectangle between regions.
+     */
+    public List<String> doOCR(List<OcrConfig> ocrConfigs) throws TesseractException {
+        String[] results = new String[ocrConfigs.size()];
+        String[] keys = new String[ocrConfigs.size()];
+        Map<OcrEngineKey, Map<OcrImageSession, List<Integer>>> misses = new LinkedHashMap<>();
+        for (int i = 0; i < ocrConfigs.size(); i++) {
+            OcrConfig ocrConfig = ocrConfigs.get(i);
+            saveReOcrAreaImage(ocrConfig);
+            if (regionOcrCache != null) {
+                keys[i] = regionOcrCache.getKey(ocrConfig);
+                Optional<String> cachedResult = regionOcrCache.get(keys[i]);
+                if (cachedResult.isPresent()) {
+                    results[i] = cachedResult.get();
+                    continue;
+                }
+            }
+            misses.computeIfAbsent(ocrConfig.getEngineKey(LANGUAGE), k -> new LinkedHashMap<>())
+                  .computeIfAbsent(ocrConfig.getImageSession(), k -> new ArrayList<>())
+                  .add(i);
+        }
+
         try {
-            Field props = getClass().getSuperclass().getDeclaredField("prop");
-            props.setAccessible(true);
-            return (Properties) props.get(this);
+            for (Map<OcrImageSession, List<Integer>> groupsByImage : misses.values()) {
+                OcrConfig firstConfig = ocrConfigs.get(groupsByImage.values().iterator().next().get(0));
+                withEngine(firstConfig, engine -> {
+                    for (List<Integer> group : groupsByImage.values()) {
+                        for (int i : group) {
+                            OcrConfig ocrConfig = ocrConfigs.get(i);
+                            ocrConfig.apply(engine);
+                            results[i] = doRegionOCR(engine, ocrConfig);
+                        }
+                    }
+                });
+            }
         } catch (Exception e) {
             log.error(e.getMessage(), e);
-            return new Properties();
+            throw new TesseractException(e);
+        }
+
+        if (regionOcrCache != null) {
+            for (Map<OcrImageSession, List<Integer>> groupsByImage : misses.values()) {
+                for (List<Integer> group : groupsByImage.values()) {
+                    for (int i : group) {
+                        regionOcrCache.put(keys[i], results[i]);
+                    }
+                }
+            }
         }
+        return Arrays.asList(results);
     }
 
-    public String doOCR(OcrConfig ocrConfig) throws TesseractException {
-        ocrConfig.apply(this);
-        File tiffFile = ocrConfig.getTiffFile().toFile();
-        String tiffFilePath = ocrConfig.getTiffFile().toAbsolutePath().toString();
+    public String getOcrSettingsFingerprint() {
+        return ocrCache.getSettingsFingerprint();
+    }
+
+    public String getPreprocessingTimings() {
+        return imagePreprocessor.getTimings();
+    }
+
+    public String getRegionCacheStats() {
+        return regionOcrCache == null ? "disabled" : regionOcrCache.toString();
+    }
+
+    private String doRegionOCR(OcrConfig ocrConfig) throws TesseractException {
+        try {
+            StringBuilder result = new StringBuilder();
+            withEngine(ocrConfig, engine -> result.append(doRegionOCR(engine, ocrConfig)));
+            return result.toString();
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw new TesseractException(e);
+        }
+    }
+
+    private static String doRegionOCR(OcrEngine engine, OcrConfig ocrConfig) {
+        String inputName = getInputName(ocrConfig);
+        StringBuilder result = new StringBuilder();
+        List<OcrImagePage> pages = ocrConfig.getImageSession().getPages();
+        for (int i = 0; i < pages.size(); i++) {
+            result.append(doOCR(engine, pages.get(i), inputName, i + 1, ocrConfig.isOcrToTsv(), ocrConfig.getOcrArea()));
+        }
+        return result.toString();
+    }
 
-        if (debugConfig.isSaveReOcrAreaImages()) {
+    private void saveReOcrAreaImage(OcrConfig ocrConfig) {
+        if (debugConfig.isSaveReOcrAreaImages() && ocrConfig.getTiffFile() != null) {
             Rectangle rect = ocrConfig.getOcrArea();
             if (rect != null) {
                 int x = rect.x;
@@ -156,83 +360,83 @@ public class OcrService extends Tesseract {
                 int height = rect.height;
                 Path rectangledFileName = Path.of(ocrConfig.getTiffFile() + String.format("_%d_%d_%d_%d.tiff", x, y, width, height));
                 log.info("Saving rectangled file: {}", rectangledFileName.toAbsolutePath());
-                saveFileWithRectangle(tiffFile, rectangledFileName, x, y, width, height);
+                saveFileWithRectangle(ocrConfig.getTiffFile().toFile(), rectangledFileName, x, y, width, height);
             }
         }
+    }
 
+    private void withEngine(OcrConfig ocrConfig, Consumer<OcrEngine> action) {
+        OcrEngine engine = ocrEnginePool.borrow(ocrConfig.getEngineKey(LANGUAGE));
+        boolean succeeded = false;
         try {
-            String imageFileFormat = ImageIOHelper.getImageFileFormat(tiffFile);
-            Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName(imageFileFormat);
-            ImageReader reader = readers.next();
-            StringBuilder result = new StringBuilder();
-            try (ImageInputStream iis = ImageIO.createImageInputStream(tiffFile)) {
-                reader.setInput(iis);
-                int imageTotal = reader.getNumImages(true);
-
-                init();
-                setVariables();
-
-                for (int i = 0; i < imageTotal; i++) {
-                    IIOImage oimage = reader.readAll(i, reader.getDefaultReadParam());
-                    result.append(doOCR(oimage, tiffFilePath, i + 1, ocrConfig.isOcrToTsv(), ocrConfig.getOcrArea()));
-                }
-            } finally {
-                reader.dispose();
-                dispose();
+            ocrConfig.apply(engine);
+            action.accept(engine);
+            succeeded = true;
+        } finally {
+            // Any failure, including errors from native code, may leave the handle in an unknown state
+            if (succeeded) {
+                ocrEnginePool.release(engine);
+            } else {
+                ocrEnginePool.invalidate(engine);
             }
-
-            return result.toString();
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            throw new TesseractException(e);
         }
     }
 
-    private String doOCR(IIOImage oimage,
-                         String filename,
-                         int pageNum,
-                         boolean isTsv,
-                         Rectangle rect) {
-        String text = "";
+    private static String doOCR(OcrEngine engine,
+                                OcrImagePage page,
+                                String inputName,
+                                int pageNum,
+                                boolean isTsv,
+                                Rectangle rect) {
+        engine.setImage(page, rect);
+        engine.setInputName(inputName);
+        if (isTsv) {
+            return engine.getTsvText(pageNum - 1);
+        } else {
+            return engine.getUTF8Text();
+        }
+    }
 
-        try {
-            RenderedImage renderedImage = oimage.getRenderedImage();
-            setImage(renderedImage, rect);
-            ITessAPI.TessBaseAPI handle = getHandle();
-            TessAPI api = getAPI();
-            if (filename != null && !filename.isEmpty()) {
-                getAPI().TessBaseAPISetInputName(getHandle(), filename);
-            }
-            Pointer textPtr;
-            if (isTsv) {
-                textPtr = api.TessBaseAPIGetTsvText(handle, pageNum - 1);
-            } else {
-                textPtr = api.TessBaseAPIGetUTF8Text(handle);
-            }
+    private static String getInputName(OcrConfig ocrConfig) {
+        Path tiffFile = ocrConfig.getTiffFile();
+        return tiffFile == null ? null : tiffFile.toAbsolutePath().toString();
+    }
 
-            String str = textPtr.getString(0);
-            api.TessDeleteText(textPtr);
-            return str;
-        } catch (IOException ioe) {
-            log.warn(ioe.getMessage(), ioe);
+    @SneakyThrows
+    private static void copyIfMissing(Path source, Path target) {
+        if (Files.exists(source) && !Files.exists(target)) {
+            Files.copy(source, target);
         }
-
-        return text;
     }
 
-    private static Path ocrCachesRoot(PathsUtils pathsUtils) {
-        return pathsUtils.getCachesRoot().resolve("cache");
+    private static String[] getOcrSettings(PathsUtils pathsUtils, ImagePreprocessor imagePreprocessor) {
+        OcrConfig fullPageConfig = OcrConfig.hiddenBuilder().build();
+        Path modelFile = Path.of(pathsUtils.getTesseractModelPath()).resolve(LANGUAGE + ".traineddata");
+        return new String[]{
+                imagePreprocessor.getFingerprint(),
+                fullPageConfig.getEngineKey(LANGUAGE).toString(),
+                "psm=" + fullPageConfig.getPageSegMode(),
+                "model=" + (Files.exists(modelFile) ? getModelHash(modelFile, pathsUtils.getCachesRoot()) : "missing")
+        };
     }
 
+    /**
+     * SHA-256 of the model, remembered next to the caches together with the size and modification time it was
+     * computed for, so a start with an unchanged model does not read the whole traineddata file.
+     */
     @SneakyThrows
-    private Path getSubdirectoryPath(Path pdfFile) {
-        String fileName = pdfFile.toFile().getName();
-        int i = fileName.indexOf('.');
-        String dirName = fileName.substring(0, i);
-        Path newRoot = ocrCachesRoot(pathsUtils).resolve(dirName);
-        if (!Files.exists(newRoot)) {
-            Files.createDirectories(newRoot);
-        }
-        return newRoot;
+    private static String getModelHash(Path modelFile, Path cachesRoot) {
+        Path hashFile = cachesRoot.resolve(modelFile.getFileName() + ".sha256");
+        String modelStamp = Files.size(modelFile) + " " + Files.getLastModifiedTime(modelFile).toMillis();
+        if (Files.exists(hashFile)) {
+            String[] stampAndHash = Files.readString(hashFile).trim().split(" ");
+            if (stampAndHash.length == 3 && modelStamp.equals(stampAndHash[0] + " " + stampAndHash[1])) {
+                return stampAndHash[2];
+            }
+        }
+        String modelHash = FileUtils.toHex(FileUtils.sha256(modelFile));
+        Files.createDirectories(cachesRoot);
+        Files.writeString(hashFile, modelStamp + " " + modelHash);
+        return modelHash;
     }
 }
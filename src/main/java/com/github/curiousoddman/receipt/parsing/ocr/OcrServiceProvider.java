@@ -1,27 +1,68 @@
 package com.github.curiousoddman.receipt.parsing.ocr;
 
 import com.github.curiousoddman.receipt.parsing.config.DebugConfig;
+import com.github.curiousoddman.receipt.parsing.config.OcrEngineConfig;
+import com.github.curiousoddman.receipt.parsing.config.PreprocessingConfig;
 import com.github.curiousoddman.receipt.parsing.ocr.tsv.TsvParser;
 import com.github.curiousoddman.receipt.parsing.utils.PathsUtils;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class OcrServiceProvider {
-    private final ThreadLocal<OcrService> tesseractThreadLocal;
-    private final DebugConfig             debugConfig;
+    private final TsvParser           tsvParser;
+    private final PathsUtils          pathsUtils;
+    private final DebugConfig         debugConfig;
+    private final OcrEngineConfig     ocrEngineConfig;
+    private final PreprocessingConfig preprocessingConfig;
 
-    public OcrServiceProvider(TsvParser tsvParser, PathsUtils pathsUtils, DebugConfig debugConfig) {
-        this.debugConfig = debugConfig;
-        tesseractThreadLocal = ThreadLocal
-                .withInitial(() -> {
-                    log.info("New Tesseract created");
-                    return new OcrService(pathsUtils, tsvParser, debugConfig);
-                });
+    private OcrEnginePool ocrEnginePool;
+    private OcrService    ocrService;
+    private OcrService    uncachedRegionOcrService;
+
+    /**
+     * The OCR service and its engine pool are created on first use, Tesseract engines only on the first cache miss.
+     */
+    public synchronized OcrService get() {
+        if (ocrService == null) {
+            ocrService = new OcrService(pathsUtils, tsvParser, debugConfig, getOcrEnginePool(), ocrEngineConfig, preprocessingConfig);
+        }
+        return ocrService;
+    }
+
+    /**
+     * OCR service sharing the engine pool of {@link #get()} that never stores region results, for work whose regions
+     * are not looked up again.
+     */
+    public synchronized OcrService getWithoutRegionCache() {
+        if (uncachedRegionOcrService == null) {
+            uncachedRegionOcrService = new OcrService(pathsUtils, tsvParser, debugConfig, getOcrEnginePool(), ocrEngineConfig, preprocessingConfig, false);
+        }
+        return uncachedRegionOcrService;
+    }
+
+    private OcrEnginePool getOcrEnginePool() {
+        if (ocrEnginePool == null) {
+            ocrEnginePool = new OcrEnginePool(pathsUtils.getTesseractModelPath(), ocrEngineConfig);
+            log.info("OCR engine pool created with max {} engines", ocrEngineConfig.getPoolSize());
+        }
+        return ocrEnginePool;
     }
 
-    public OcrService get() {
-        return tesseractThreadLocal.get();
+    @PreDestroy
+    public synchronized void close() {
+        if (ocrEnginePool == null) {
+            return;
+        }
+        if (ocrService != null) {
+            log.info("Preprocessing: {}", ocrService.getPreprocessingTimings());
+            log.info("Region OCR cache: {}", ocrService.getRegionCacheStats());
+        }
+        log.info("Closing OCR engine pool");
+        ocrEnginePool.close();
     }
 }
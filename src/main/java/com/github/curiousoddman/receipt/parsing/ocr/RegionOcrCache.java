@@ -0,0 +1,193 @@
+package com.github.curiousoddman.receipt.parsing.ocr;
+
+import com.github.curiousoddman.receipt.parsing.utils.FileUtils;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Results of {@link OcrService#doOCR(OcrConfig)} keyed by image, OCR area and the settings that affect
+ * recognition. Every result is stored on disk, recently used ones are also kept in a size bounded LRU map.
+ * When the files outgrow the disk limit, the least recently used ones are deleted.
+ */
+@Slf4j
+public class RegionOcrCache {
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final Path                          root;
+    private final String                        settingsFingerprint;
+    private final long                          maxMemoryBytes;
+    private final long                          maxDiskBytes;
+    private final Object                        diskLock   = new Object();
+    private final LinkedHashMap<String, String> memory     = new LinkedHashMap<>(256, 0.75f, true);
+    private final AtomicLong                    memoryHits = new AtomicLong();
+    private final AtomicLong                    diskHits   = new AtomicLong();
+    private final AtomicLong                    misses     = new AtomicLong();
+    private long                                memoryBytes;
+    private long                                diskBytes  = -1;
+
+    @SneakyThrows
+    public RegionOcrCache(Path root, String settingsFingerprint, long maxMemoryBytes, long maxDiskBytes) {
+        this.root = root;
+        this.settingsFingerprint = settingsFingerprint;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        Files.createDirectories(root);
+    }
+
+    public String getKey(OcrConfig ocrConfig) {
+        Rectangle area = ocrConfig.getOcrArea();
+        return FileUtils.toHex(sha256(String.join(
+                "\n",
+                settingsFingerprint,
+                ocrConfig.getImageSession().getCacheId(),
+                area == null ? "full" : area.x + "," + area.y + "," + area.width + "," + area.height,
+                ocrConfig.getEngineKey(OcrService.LANGUAGE).toString(),
+                "psm=" + ocrConfig.getPageSegMode(),
+                "tsv=" + ocrConfig.isOcrToTsv()
+        )));
+    }
+
+    @SneakyThrows
+    public Optional<String> get(String key) {
+        synchronized (this) {
+            String result = memory.get(key);
+            if (result != null) {
+                memoryHits.incrementAndGet();
+                return Optional.of(result);
+            }
+        }
+        Path file = getFile(key);
+        try {
+            String result = Files.readString(file);
+            // Modification time orders files for eviction, so a disk hit marks the file as recently used
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            diskHits.incrementAndGet();
+            remember(key, result);
+            return Optional.of(result);
+        } catch (NoSuchFileException e) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+    }
+
+    @SneakyThrows
+    public void put(String key, String result) {
+        Path file = getFile(key);
+        Files.createDirectories(file.getParent());
+        Path tempFile = file.resolveSibling(file.getFileName() + "." + Thread.currentThread().threadId() + ".tmp");
+        Files.writeString(tempFile, result);
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        remember(key, result);
+        addDiskBytes(Files.size(file));
+    }
+
+    @Override
+    public String toString() {
+        return "memory hits=" + memoryHits + ", disk hits=" + diskHits + ", misses=" + misses;
+    }
+
+    private synchronized void remember(String key, String result) {
+        String previous = memory.put(key, result);
+        if (previous != null) {
+            memoryBytes -= sizeOf(previous);
+        }
+        memoryBytes += sizeOf(result);
+        Iterator<Map.Entry<String, String>> iterator = memory.entrySet().iterator();
+        while (memoryBytes > maxMemoryBytes && iterator.hasNext()) {
+            Map.Entry<String, String> eldest = iterator.next();
+            memoryBytes -= sizeOf(eldest.getValue());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Disk usage is measured by walking the files on the first write of the run and then counted along.
+     */
+    private void addDiskBytes(long bytes) {
+        synchronized (diskLock) {
+            if (diskBytes < 0) {
+                diskBytes = listFiles().stream().mapToLong(CachedFile::size).sum();
+            } else {
+                diskBytes += bytes;
+            }
+            if (diskBytes > maxDiskBytes) {
+                evictLeastRecentlyUsed();
+            }
+        }
+    }
+
+    @SneakyThrows
+    private void evictLeastRecentlyUsed() {
+        List<CachedFile> files = new ArrayList<>(listFiles());
+        files.sort(Comparator.comparing(CachedFile::lastUsed));
+        long targetBytes = maxDiskBytes * 3 / 4;
+        int deleted = 0;
+        for (CachedFile file : files) {
+            if (diskBytes <= targetBytes) {
+                break;
+            }
+            Files.deleteIfExists(file.path());
+            diskBytes -= file.size();
+            deleted++;
+        }
+        log.info("Region OCR cache over {} bytes on disk, deleted {} least recently used results", maxDiskBytes, deleted);
+    }
+
+    @SneakyThrows
+    private List<CachedFile> listFiles() {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files
+                    .filter(file -> Files.isRegularFile(file) && !file.getFileName().toString().endsWith(".tmp"))
+                    .map(RegionOcrCache::toCachedFile)
+                    .flatMap(Optional::stream)
+                    .toList();
+        }
+    }
+
+    private static Optional<CachedFile> toCachedFile(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return Optional.of(new CachedFile(file, attributes.size(), attributes.lastModifiedTime()));
+        } catch (IOException e) {
+            // Deleted or replaced meanwhile
+            return Optional.empty();
+        }
+    }
+
+    private Path getFile(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    private static long sizeOf(String result) {
+        return ENTRY_OVERHEAD_BYTES + 2L * result.length();
+    }
+
+    @SneakyThrows
+    private static byte[] sha256(String text) {
+        return MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private record CachedFile(Path path, long size, FileTime lastUsed) {
+
+    }
+}
@@ -1,141 +1,188 @@
 package com.github.curiousoddman.receipt.parsing.ocr.tsv;
 
 import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.*;
-import com.github.curiousoddman.receipt.parsing.ocr.tsv.raw.TsvRow;
-import lombok.SneakyThrows;
 import org.springframework.stereotype.Component;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Single pass parser of Tesseract TSV output. Columns are
+ * level, page_num, block_num, par_num, line_num, word_num, left, top, width, height, conf, text,
+ * where level is 1 for page, 2 for block, 3 for paragraph, 4 for line and 5 for word.
+ * Tesseract writes every row right after its parent row, so the document tree is built in row order.
+ * Only the parser keeps the mutable child lists, the returned document is read-only.
+ */
 @Component
 public class TsvParser {
-
-    @SneakyThrows
-    public OcrTsvResult parse(String tsvContents) {
-        OcrTsvResult document = new OcrTsvResult(tsvContents, new ArrayList<>());
-
-        List<String> lines = tsvContents.lines().toList();
-
-        List<TsvRow> tsvRows = lines
-                .stream()
-                .map(TsvParser::lineToTsvRow)
-                .toList();
-
-        Map<Integer, List<TsvRow>> rowsPerPage = tsvRows
-                .stream()
-                .collect(Collectors.groupingBy(TsvRow::pageNum));
-
-        for (List<TsvRow> pageRows : rowsPerPage.values()) {
-            pageRows = new ArrayList<>(pageRows);
-            TsvRow pageIdRow = findOnlyOneAndRemove(1, pageRows);
-            OcrResultPage newPage = new OcrResultPage(document,
-                                                      pageIdRow.pageNum(),
-                                                      pageIdRow.left(),
-                                                      pageIdRow.top(),
-                                                      pageIdRow.width(),
-                                                      pageIdRow.height(),
-                                                      new ArrayList<>());
-            document.getPages().add(newPage);
-
-            for (List<TsvRow> blockRows : pageRows.stream().collect(Collectors.groupingBy(TsvRow::blockNum)).values()) {
-                blockRows = new ArrayList<>(blockRows);
-                TsvRow blockIdRow = findOnlyOneAndRemove(2, blockRows);
-                OcrResultBlock newBlock = new OcrResultBlock(
-                        newPage,
-                        blockIdRow.blockNum(),
-                        blockIdRow.left(),
-                        blockIdRow.top(),
-                        blockIdRow.width(),
-                        blockIdRow.height(),
-                        new ArrayList<>()
-                );
-                newPage.getBlocks().add(newBlock);
-
-                for (List<TsvRow> paragraphRows : blockRows.stream().collect(Collectors.groupingBy(TsvRow::paragraphNum)).values()) {
-                    paragraphRows = new ArrayList<>(paragraphRows);
-                    TsvRow paragraphIdRow = findOnlyOneAndRemove(3, paragraphRows);
-                    OcrResultParagraph newParagraph = new OcrResultParagraph(
-                            newBlock,
-                            paragraphIdRow.paragraphNum(),
-                            paragraphIdRow.left(),
-                            paragraphIdRow.top(),
-                            paragraphIdRow.width(),
-                            paragraphIdRow.height(),
-                            new ArrayList<>()
-                    );
-                    newBlock.getParagraphs().add(newParagraph);
-
-                    for (List<TsvRow> lineRows : paragraphRows.stream().collect(Collectors.groupingBy(TsvRow::lineNum)).values()) {
-                        lineRows = new ArrayList<>(lineRows);
-                        TsvRow lineIdRow = findOnlyOneAndRemove(4, lineRows);
-                        OcrResultLine newLine = new OcrResultLine(
-                                newParagraph,
-                                lineIdRow.lineNum(),
-                                lineIdRow.left(),
-                                lineIdRow.top(),
-                                lineIdRow.width(),
-                                lineIdRow.height(),
-                                new ArrayList<>()
-                        );
-
-                        lineRows
-                                .stream()
-                                .map(lineRow -> new OcrResultWord(newLine,
-                                                                  lineRow.wordNum(),
-                                                                  lineRow.left(),
-                                                                  lineRow.top(),
-                                                                  lineRow.width(),
-                                                                  lineRow.height(),
-                                                                  lineRow.confidence(),
-                                                                  lineRow.text())).
-                                forEach(newLine.getWords()::add);
-                        newParagraph.getLines().add(newLine);
-                    }
+    private static final int LEVEL_PAGE      = 1;
+    private static final int LEVEL_BLOCK     = 2;
+    private static final int LEVEL_PARAGRAPH = 3;
+    private static final int LEVEL_LINE      = 4;
+    private static final int LEVEL_WORD      = 5;
+
+    public OcrTsvResult parse(CharSequence tsvContents) {
+        List<OcrResultPage> pages = new ArrayList<>();
+        OcrTsvResult document = new OcrTsvResult(tsvContents.toString(), unmodifiableList(pages));
+
+        RowReader reader = new RowReader(tsvContents);
+        OcrResultPage page = null;
+        OcrResultBlock block = null;
+        OcrResultParagraph paragraph = null;
+        OcrResultLine line = null;
+        List<OcrResultBlock> blocks = null;
+        List<OcrResultParagraph> paragraphs = null;
+        List<OcrResultLine> lines = null;
+        List<OcrResultWord> words = null;
+        while (reader.nextRow()) {
+            int level = reader.nextInt();
+            int pageNum = reader.nextInt();
+            int blockNum = reader.nextInt();
+            int paragraphNum = reader.nextInt();
+            int lineNum = reader.nextInt();
+            int wordNum = reader.nextInt();
+            int left = reader.nextInt();
+            int top = reader.nextInt();
+            int width = reader.nextInt();
+            int height = reader.nextInt();
+            float confidence = reader.nextFloat();
+            String text = reader.lastText();
+
+            switch (level) {
+                case LEVEL_PAGE -> {
+                    blocks = new ArrayList<>();
+                    page = new OcrResultPage(document, pageNum, left, top, width, height, unmodifiableList(blocks));
+                    pages.add(page);
+                }
+                case LEVEL_BLOCK -> {
+                    paragraphs = new ArrayList<>();
+                    block = new OcrResultBlock(page, blockNum, left, top, width, height, unmodifiableList(paragraphs));
+                    blocks.add(block);
+                }
+                case LEVEL_PARAGRAPH -> {
+                    lines = new ArrayList<>();
+                    paragraph = new OcrResultParagraph(block, paragraphNum, left, top, width, height, unmodifiableList(lines));
+                    paragraphs.add(paragraph);
                 }
+                case LEVEL_LINE -> {
+                    words = new ArrayList<>();
+                    line = new OcrResultLine(paragraph, lineNum, left, top, width, height, unmodifiableList(words));
+                    lines.add(line);
+                }
+                case LEVEL_WORD -> words.add(new OcrResultWord(line, wordNum, left, top, width, height, confidence, text));
+                default -> throw new IllegalArgumentException("Unexpected TSV row level " + level + " at offset " + reader.rowStart);
             }
         }
 
         return document;
     }
 
-    private static TsvRow findOnlyOneAndRemove(int rowType, List<TsvRow> rows) {
-        TsvRow found = null;
-        Iterator<TsvRow> iterator = rows.iterator();
-        while (iterator.hasNext()) {
-            var row = iterator.next();
-            if (row.level() == rowType) {
-                if (found == null) {
-                    found = row;
-                    iterator.remove();
+    public ColumnarOcrTsvResult parseColumnar(CharSequence tsvContents) {
+        ColumnarOcrTsvResult.Builder builder = ColumnarOcrTsvResult.builder();
+        RowReader reader = new RowReader(tsvContents);
+        while (reader.nextRow()) {
+            int level = reader.nextInt();
+            int pageNum = reader.nextInt();
+            int blockNum = reader.nextInt();
+            int paragraphNum = reader.nextInt();
+            int lineNum = reader.nextInt();
+            int wordNum = reader.nextInt();
+            int num = switch (level) {
+                case LEVEL_PAGE -> pageNum;
+                case LEVEL_BLOCK -> blockNum;
+                case LEVEL_PARAGRAPH -> paragraphNum;
+                case LEVEL_LINE -> lineNum;
+                case LEVEL_WORD -> wordNum;
+                default -> throw new IllegalArgumentException("Unexpected TSV row level " + level + " at offset " + reader.rowStart);
+            };
+            builder.addRow(level, num, reader.nextInt(), reader.nextInt(), reader.nextInt(), reader.nextInt(), reader.nextFloat(), reader.lastText());
+        }
+        return builder.build();
+    }
+
+    private static final class RowReader {
+        private final CharSequence text;
+        private final int          length;
+        private int                position;
+        private int                rowStart;
+
+        private RowReader(CharSequence text) {
+            this.text = text;
+            this.length = text.length();
+        }
+
+        boolean nextRow() {
+            while (position < length && isLineBreak(text.charAt(position))) {
+                position++;
+            }
+            rowStart = position;
+            return position < length;
+        }
+
+        int nextInt() {
+            boolean negative = false;
+            if (position < length && text.charAt(position) == '-') {
+                negative = true;
+                position++;
+            }
+            int value = 0;
+            while (position < length) {
+                char c = text.charAt(position);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                value = value * 10 + (c - '0');
+                position++;
+            }
+            skipSeparator();
+            return negative ? -value : value;
+        }
+
+        float nextFloat() {
+            boolean negative = false;
+            if (position < length && text.charAt(position) == '-') {
+                negative = true;
+                position++;
+            }
+            double value = 0;
+            double scale = 0;
+            while (position < length) {
+                char c = text.charAt(position);
+                if (c == '.') {
+                    scale = 1;
+                } else if (c >= '0' && c <= '9') {
+                    value = value * 10 + (c - '0');
+                    scale *= 10;
                 } else {
-                    throw new RuntimeException("Duplicate row type found!");
+                    break;
                 }
+                position++;
+            }
+            skipSeparator();
+            if (scale > 1) {
+                value /= scale;
             }
+            return (float) (negative ? -value : value);
         }
 
-        return found;
-    }
+        String lastText() {
+            int start = position;
+            while (position < length && !isLineBreak(text.charAt(position))) {
+                position++;
+            }
+            return start == position ? null : text.subSequence(start, position).toString();
+        }
 
-    private static TsvRow lineToTsvRow(String line) {
-        String[] split = line.split("\t");
-        return new TsvRow(
-                Integer.parseInt(split[0]),
-                Integer.parseInt(split[1]),
-                Integer.parseInt(split[2]),
-                Integer.parseInt(split[3]),
-                Integer.parseInt(split[4]),
-                Integer.parseInt(split[5]),
-                Integer.parseInt(split[6]),
-                Integer.parseInt(split[7]),
-                Integer.parseInt(split[8]),
-                Integer.parseInt(split[9]),
-                new BigDecimal(split[10]),
-                split.length == 12 ? split[11] : null
-        );
+        private void skipSeparator() {
+            if (position < length && text.charAt(position) == '\t') {
+                position++;
+            }
+        }
+
+        private static boolean isLineBreak(char c) {
+            return c == '\n' || c == '\r';
+        }
     }
 }
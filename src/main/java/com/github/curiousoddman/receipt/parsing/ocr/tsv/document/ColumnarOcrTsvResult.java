@@ -0,0 +1,284 @@
+package com.github.curiousoddman.receipt.parsing.ocr.tsv.document;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Compact form of {@link OcrTsvResult} for keeping many receipts in memory. Every TSV row is one index
+ * into parallel arrays, the text of all words shares one char buffer. {@link #toOcrTsvResult()} builds
+ * the regular document tree again when a receipt has to be parsed or validated.
+ */
+public class ColumnarOcrTsvResult {
+    private static final int LEVEL_PAGE      = 1;
+    private static final int LEVEL_BLOCK     = 2;
+    private static final int LEVEL_PARAGRAPH = 3;
+    private static final int LEVEL_LINE      = 4;
+    private static final int LEVEL_WORD      = 5;
+
+    @Getter
+    private final int     rowCount;
+    private final int[]   levels;
+    private final int[]   nums;
+    private final int[]   xs;
+    private final int[]   ys;
+    private final int[]   widths;
+    private final int[]   heights;
+    private final float[] confidences;
+    private final char[]  text;
+    private final int[]   textOffsets;
+
+    private ColumnarOcrTsvResult(Builder builder) {
+        rowCount = builder.rowCount;
+        levels = Arrays.copyOf(builder.levels, rowCount);
+        nums = Arrays.copyOf(builder.nums, rowCount);
+        xs = Arrays.copyOf(builder.xs, rowCount);
+        ys = Arrays.copyOf(builder.ys, rowCount);
+        widths = Arrays.copyOf(builder.widths, rowCount);
+        heights = Arrays.copyOf(builder.heights, rowCount);
+        confidences = Arrays.copyOf(builder.confidences, rowCount);
+        text = builder.text.toString().toCharArray();
+        textOffsets = Arrays.copyOf(builder.textOffsets, rowCount + 1);
+    }
+
+    private ColumnarOcrTsvResult(int rowCount, int[] levels, int[] nums, int[] xs, int[] ys, int[] widths, int[] heights,
+                                 float[] confidences, char[] text, int[] textOffsets) {
+        this.rowCount = rowCount;
+        this.levels = levels;
+        this.nums = nums;
+        this.xs = xs;
+        this.ys = ys;
+        this.widths = widths;
+        this.heights = heights;
+        this.confidences = confidences;
+        this.text = text;
+        this.textOffsets = textOffsets;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static ColumnarOcrTsvResult of(OcrTsvResult document) {
+        Builder builder = builder();
+        for (OcrResultPage page : document.getPages()) {
+            builder.addRow(LEVEL_PAGE, page.getPageNum(), page.getX(), page.getY(), page.getWidth(), page.getHeight(), -1, null);
+            for (OcrResultBlock block : page.getBlocks()) {
+                builder.addRow(LEVEL_BLOCK, block.getBlockNum(), block.getX(), block.getY(), block.getWidth(), block.getHeight(), -1, null);
+                for (OcrResultParagraph paragraph : block.getParagraphs()) {
+                    builder.addRow(LEVEL_PARAGRAPH, paragraph.getParagraphNum(), paragraph.getX(), paragraph.getY(), paragraph.getWidth(), paragraph.getHeight(), -1, null);
+                    for (OcrResultLine line : paragraph.getLines()) {
+                        builder.addRow(LEVEL_LINE, line.getLineNum(), line.getX(), line.getY(), line.getWidth(), line.getHeight(), -1, null);
+                        for (OcrResultWord word : line.getWords()) {
+                            builder.addRow(LEVEL_WORD, word.getWordNum(), word.getX(), word.getY(), word.getWidth(), word.getHeight(), word.getConfidence(), word.getText());
+                        }
+                    }
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    public OcrTsvResult toOcrTsvResult() {
+        List<OcrResultPage> pages = new ArrayList<>();
+        OcrTsvResult document = new OcrTsvResult(null, unmodifiableList(pages));
+        OcrResultPage page = null;
+        OcrResultBlock block = null;
+        OcrResultParagraph paragraph = null;
+        OcrResultLine line = null;
+        List<OcrResultBlock> blocks = null;
+        List<OcrResultParagraph> paragraphs = null;
+        List<OcrResultLine> lines = null;
+        List<OcrResultWord> words = null;
+        for (int row = 0; row < rowCount; row++) {
+            switch (levels[row]) {
+                case LEVEL_PAGE -> {
+                    blocks = new ArrayList<>();
+                    page = new OcrResultPage(document, nums[row], xs[row], ys[row], widths[row], heights[row], unmodifiableList(blocks));
+                    pages.add(page);
+                }
+                case LEVEL_BLOCK -> {
+                    paragraphs = new ArrayList<>();
+                    block = new OcrResultBlock(page, nums[row], xs[row], ys[row], widths[row], heights[row], unmodifiableList(paragraphs));
+                    blocks.add(block);
+                }
+                case LEVEL_PARAGRAPH -> {
+                    lines = new ArrayList<>();
+                    paragraph = new OcrResultParagraph(block, nums[row], xs[row], ys[row], widths[row], heights[row], unmodifiableList(lines));
+                    paragraphs.add(paragraph);
+                }
+                case LEVEL_LINE -> {
+                    words = new ArrayList<>();
+                    line = new OcrResultLine(paragraph, nums[row], xs[row], ys[row], widths[row], heights[row], unmodifiableList(words));
+                    lines.add(line);
+                }
+                case LEVEL_WORD -> words.add(new OcrResultWord(line, nums[row], xs[row], ys[row], widths[row], heights[row], confidences[row], getText(row)));
+                default -> throw new IllegalStateException("Unexpected level " + levels[row] + " in row " + row);
+            }
+        }
+        return document;
+    }
+
+    /**
+     * Writes the rows back in Tesseract TSV layout. Confidence values keep float precision,
+     * so the text can differ from the original Tesseract output in the last digits.
+     */
+    public String toTsv() {
+        StringBuilder sb = new StringBuilder(text.length + rowCount * 40);
+        int[] path = new int[LEVEL_WORD + 1];
+        for (int row = 0; row < rowCount; row++) {
+            int level = levels[row];
+            path[level] = nums[row];
+            Arrays.fill(path, level + 1, path.length, 0);
+            sb.append(level);
+            for (int i = LEVEL_PAGE; i <= LEVEL_WORD; i++) {
+                sb.append('\t').append(path[i]);
+            }
+            sb.append('\t').append(xs[row])
+              .append('\t').append(ys[row])
+              .append('\t').append(widths[row])
+              .append('\t').append(heights[row])
+              .append('\t');
+            float confidence = confidences[row];
+            if (confidence == (int) confidence) {
+                sb.append((int) confidence);
+            } else {
+                sb.append(new BigDecimal(Float.toString(confidence)).toPlainString());
+            }
+            sb.append('\t').append(text, textOffsets[row], textOffsets[row + 1] - textOffsets[row]).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Column by column layout: row count, the int and float columns, text offsets, then the text buffer.
+     */
+    public int getSerializedSize() {
+        return Integer.BYTES + 7 * rowCount * Integer.BYTES + (rowCount + 1) * Integer.BYTES + Integer.BYTES + text.length * Character.BYTES;
+    }
+
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(rowCount);
+        for (int[] column : new int[][]{levels, nums, xs, ys, widths, heights}) {
+            buffer.asIntBuffer().put(column);
+            buffer.position(buffer.position() + column.length * Integer.BYTES);
+        }
+        buffer.asFloatBuffer().put(confidences);
+        buffer.position(buffer.position() + confidences.length * Float.BYTES);
+        buffer.asIntBuffer().put(textOffsets);
+        buffer.position(buffer.position() + textOffsets.length * Integer.BYTES);
+        buffer.putInt(text.length);
+        buffer.asCharBuffer().put(text);
+        buffer.position(buffer.position() + text.length * Character.BYTES);
+    }
+
+    public static ColumnarOcrTsvResult readFrom(ByteBuffer buffer) {
+        int rowCount = buffer.getInt();
+        if (rowCount < 0 || (long) rowCount * (8 * Integer.BYTES) > buffer.remaining()) {
+            throw new IllegalStateException("Invalid row count " + rowCount + " with " + buffer.remaining() + " bytes left");
+        }
+        int[][] columns = new int[6][];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = readInts(buffer, rowCount);
+        }
+        float[] confidences = new float[rowCount];
+        buffer.asFloatBuffer().get(confidences);
+        buffer.position(buffer.position() + rowCount * Float.BYTES);
+        int[] textOffsets = readInts(buffer, rowCount + 1);
+        int textLength = buffer.getInt();
+        if (textLength < 0 || (long) textLength * Character.BYTES > buffer.remaining()) {
+            throw new IllegalStateException("Invalid text length " + textLength + " with " + buffer.remaining() + " bytes left");
+        }
+        char[] text = new char[textLength];
+        buffer.asCharBuffer().get(text);
+        buffer.position(buffer.position() + text.length * Character.BYTES);
+        return new ColumnarOcrTsvResult(rowCount, columns[0], columns[1], columns[2], columns[3], columns[4], columns[5],
+                                        confidences, text, textOffsets);
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int length) {
+        int[] values = new int[length];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + length * Integer.BYTES);
+        return values;
+    }
+
+    public int getLevel(int row) {
+        return levels[row];
+    }
+
+    public String getText(int row) {
+        int start = textOffsets[row];
+        int end = textOffsets[row + 1];
+        return start == end ? null : new String(text, start, end - start);
+    }
+
+    /**
+     * Exact size of the backing arrays, assuming 16 byte array headers.
+     */
+    public long getSizeInBytes() {
+        long intArrays = 6L * arraySize(rowCount, Integer.BYTES) + arraySize(rowCount + 1, Integer.BYTES);
+        return intArrays + arraySize(rowCount, Float.BYTES) + arraySize(text.length, Character.BYTES);
+    }
+
+    private static long arraySize(int length, int elementBytes) {
+        return (16L + (long) length * elementBytes + 7) & ~7L;
+    }
+
+    public static class Builder {
+        private final StringBuilder text        = new StringBuilder();
+        private int                 rowCount;
+        private int[]               levels      = new int[256];
+        private int[]               nums        = new int[256];
+        private int[]               xs          = new int[256];
+        private int[]               ys          = new int[256];
+        private int[]               widths      = new int[256];
+        private int[]               heights     = new int[256];
+        private float[]             confidences = new float[256];
+        private int[]               textOffsets = new int[257];
+
+        private Builder() {
+        }
+
+        public Builder addRow(int level, int num, int x, int y, int width, int height, float confidence, String rowText) {
+            if (rowCount == levels.length) {
+                grow();
+            }
+            levels[rowCount] = level;
+            nums[rowCount] = num;
+            xs[rowCount] = x;
+            ys[rowCount] = y;
+            widths[rowCount] = width;
+            heights[rowCount] = height;
+            confidences[rowCount] = confidence;
+            if (rowText != null) {
+                text.append(rowText);
+            }
+            rowCount++;
+            textOffsets[rowCount] = text.length();
+            return this;
+        }
+
+        public ColumnarOcrTsvResult build() {
+            return new ColumnarOcrTsvResult(this);
+        }
+
+        private void grow() {
+            int capacity = levels.length * 2;
+            levels = Arrays.copyOf(levels, capacity);
+            nums = Arrays.copyOf(nums, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            widths = Arrays.copyOf(widths, capacity);
+            heights = Arrays.copyOf(heights, capacity);
+            confidences = Arrays.copyOf(confidences, capacity);
+            textOffsets = Arrays.copyOf(textOffsets, capacity + 1);
+        }
+    }
+}
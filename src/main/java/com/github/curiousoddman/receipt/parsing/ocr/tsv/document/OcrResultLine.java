@@ -1,6 +1,7 @@
 package com.github.curiousoddman.receipt.parsing.ocr.tsv.document;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
@@ -24,9 +25,10 @@ public class OcrResultLine implements Positioned {
 
     private final List<OcrResultWord> words;
 
-    public String getText() {
-        return words.stream().map(OcrResultWord::getText).collect(Collectors.joining(" "));
-    }
+    @Getter(lazy = true)
+    private final String          text       = joinWords();
+    @Getter(value = AccessLevel.PRIVATE, lazy = true)
+    private final OcrResultWord[] wordsByNum = indexWordsByNum();
 
     public boolean contains(String text) {
         return getText().contains(text);
@@ -47,10 +49,11 @@ public class OcrResultLine implements Positioned {
     }
 
     public Optional<OcrResultWord> getWordByWordNum(int wordNum) {
-        return words
-                .stream()
-                .filter(w -> w.getWordNum() == wordNum)
-                .findAny();
+        OcrResultWord[] byNum = getWordsByNum();
+        if (wordNum < 0 || wordNum >= byNum.length) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(byNum[wordNum]);
     }
 
     public Optional<OcrResultWord> getWordByIndex(int index) {
@@ -77,4 +80,19 @@ public class OcrResultLine implements Positioned {
     public String toString() {
         return getText();
     }
+
+    private String joinWords() {
+        return words.stream().map(OcrResultWord::getText).collect(Collectors.joining(" "));
+    }
+
+    private OcrResultWord[] indexWordsByNum() {
+        int maxWordNum = words.stream().mapToInt(OcrResultWord::getWordNum).max().orElse(-1);
+        OcrResultWord[] byNum = new OcrResultWord[maxWordNum + 1];
+        for (OcrResultWord word : words) {
+            if (word.getWordNum() >= 0 && byNum[word.getWordNum()] == null) {
+                byNum[word.getWordNum()] = word;
+            }
+        }
+        return byNum;
+    }
 }
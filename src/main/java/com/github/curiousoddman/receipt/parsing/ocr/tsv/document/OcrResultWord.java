@@ -6,7 +6,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.ToString;
 
 import java.awt.*;
-import java.math.BigDecimal;
 
 @ToString
 @Getter
@@ -15,13 +14,13 @@ public class OcrResultWord implements Positioned {
     @JsonIgnore
     private final OcrResultLine parentLine;
 
-    private final int        wordNum;
-    private final int        x;
-    private final int        y;
-    private final int        width;
-    private final int        height;
-    private final BigDecimal confidence;
-    private final String     text;
+    private final int    wordNum;
+    private final int    x;
+    private final int    y;
+    private final int    width;
+    private final int    height;
+    private final float  confidence;
+    private final String text;
 
     @JsonIgnore
     public Rectangle getWordRect() {
@@ -1,6 +1,7 @@
 package com.github.curiousoddman.receipt.parsing.ocr.tsv.document;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
@@ -12,11 +13,32 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class OcrTsvResult {
     @JsonIgnore
+    @Getter(AccessLevel.NONE)
     private final String              tsvFileContents;
     private final List<OcrResultPage> pages;
 
     @JsonIgnore
-    public List<OcrResultLine> getLines() {
+    @Getter(lazy = true)
+    private final List<OcrResultLine> lines = collectLines();
+
+    @JsonIgnore
+    @Getter(value = AccessLevel.PRIVATE, lazy = true)
+    private final String writtenBackTsv = ColumnarOcrTsvResult.of(this).toTsv();
+
+    /**
+     * Original Tesseract output, or the rows written back from the document when it was not loaded from TSV.
+     */
+    @JsonIgnore
+    public String getTsvFileContents() {
+        return tsvFileContents != null ? tsvFileContents : getWrittenBackTsv();
+    }
+
+    @Override
+    public String toString() {
+        return pages.stream().map(OcrResultPage::toString).collect(Collectors.joining(";"));
+    }
+
+    private List<OcrResultLine> collectLines() {
         return pages
                 .stream()
                 .map(OcrResultPage::getBlocks)
@@ -27,9 +49,4 @@ public class OcrTsvResult {
                 .flatMap(List::stream)
                 .toList();
     }
-
-    @Override
-    public String toString() {
-        return pages.stream().map(OcrResultPage::toString).collect(Collectors.joining(";"));
-    }
 }
@@ -0,0 +1,31 @@
+package com.github.curiousoddman.receipt.parsing.parsing.receipt.rimi;
+
+import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.OcrResultWord;
+import com.github.curiousoddman.receipt.parsing.parsing.NumberOcrResult;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * One way of reading a number from a receipt word. {@link ReceiptNumberExtractionChain} tries its strategies
+ * from the cheapest to the most expensive and stops at the first one that returns a result.
+ */
+@FunctionalInterface
+public interface NumberExtractionStrategy {
+    Optional<NumberOcrResult> extract(Attempt attempt);
+
+    /**
+     * @param expectedValue value the surrounding numbers imply for this word, {@code null} when unknown
+     * @param triedValues   values rejected so far, reported when no strategy succeeds
+     */
+    record Attempt(OcrResultWord word,
+                   int wordIndexInLine,
+                   Pattern expectedFormat,
+                   BigDecimal expectedValue,
+                   RimiContext context,
+                   List<String> triedValues) {
+
+    }
+}
@@ -1,45 +1,123 @@
 package com.github.curiousoddman.receipt.parsing.parsing.receipt.rimi;
 
+import com.github.curiousoddman.receipt.parsing.model.MyBigDecimal;
 import com.github.curiousoddman.receipt.parsing.parsing.NumberOcrResult;
+import com.github.curiousoddman.receipt.parsing.parsing.receipt.rimi.NumberExtractionStrategy.Attempt;
 import com.github.curiousoddman.receipt.parsing.ocr.tsv.TsvParser;
 import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.OcrTsvResult;
 import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.OcrResultLine;
 import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.OcrResultWord;
 import com.github.curiousoddman.receipt.parsing.ocr.OcrConfig;
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import net.sourceforge.tess4j.TesseractException;
+import org.springframework.stereotype.Component;
 
 import java.awt.*;
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static com.github.curiousoddman.receipt.parsing.utils.ConversionUtils.isFormatValid;
 import static com.github.curiousoddman.receipt.parsing.utils.ConversionUtils.toMyBigDecimal;
 
+/**
+ * Reads numbers from receipt words with strategies ordered by cost: the text as is, the text joined with the next
+ * word, common OCR confusions and a lost decimal separator checked against the value the other item numbers imply,
+ * and only then re-OCR of the word and of its whole line. Calls, hits and time are counted per strategy.
+ */
 @Slf4j
-@RequiredArgsConstructor
+@Component
 public class ReceiptNumberExtractionChain {
-    private final List<String> triedValues = new ArrayList<>();
+    /**
+     * Only glyphs that have a single digit look-alike, a B could as well be a 3 as an 8.
+     */
+    private static final Map<Character, Character> OCR_CONFUSIONS = Map.of(
+            'O', '0', 'o', '0',
+            'l', '1', 'I', '1', '|', '1'
+    );
 
-    private final Pattern     expectedFormat;
-    private final RimiContext context;
-    private final TsvParser   tsvParser;
+    private final List<Strategy> strategies = new CopyOnWriteArrayList<>();
+    private final TsvParser      tsvParser;
 
-    public NumberOcrResult parse(OcrResultWord originalWord, int wordIndexInLine) {
+    public ReceiptNumberExtractionChain(TsvParser tsvParser) {
+        this.tsvParser = tsvParser;
+        addStrategy("original", this::original);
+        addStrategy("combine-with-next", this::combineWithNextWord);
+        addStrategy("ocr-confusions", this::correctOcrConfusions);
+        addStrategy("arithmetic", this::matchExpectedValue);
+        addStrategy("re-ocr-word", this::reOcrWordLocation);
+        addStrategy("re-ocr-line", this::reOcrWordLine);
+    }
+
+    /**
+     * Appends a strategy, it is tried after every strategy added before it.
+     */
+    public void addStrategy(String name, NumberExtractionStrategy strategy) {
+        strategies.add(new Strategy(name, strategy, new LongAdder(), new LongAdder(), new LongAdder()));
+    }
+
+    public NumberOcrResult parse(OcrResultWord originalWord, int wordIndexInLine, Pattern expectedFormat, RimiContext context) {
+        return parse(originalWord, wordIndexInLine, expectedFormat, null, context);
+    }
+
+    public NumberOcrResult parse(OcrResultWord originalWord,
+                                 int wordIndexInLine,
+                                 Pattern expectedFormat,
+                                 BigDecimal expectedValue,
+                                 RimiContext context) {
+        List<String> triedValues = new ArrayList<>();
+        Attempt attempt = new Attempt(originalWord, wordIndexInLine, expectedFormat, expectedValue, context, triedValues);
+        for (Strategy strategy : strategies) {
+            long start = System.nanoTime();
+            Optional<NumberOcrResult> result = strategy.strategy().extract(attempt);
+            strategy.calls().increment();
+            strategy.nanos().add(System.nanoTime() - start);
+            if (result.isPresent()) {
+                strategy.hits().increment();
+                return result.get();
+            }
+        }
+        return NumberOcrResult.ofError("Failed to extract number", triedValues);
+    }
+
+    public String getStats() {
+        return strategies.stream()
+                         .map(strategy -> {
+                             long calls = strategy.calls().sum();
+                             return String.format("%s: %d calls, %d hits, %.3fms avg",
+                                                  strategy.name(),
+                                                  calls,
+                                                  strategy.hits().sum(),
+                                                  calls == 0 ? 0 : strategy.nanos().sum() / 1e6 / calls);
+                         })
+                         .collect(Collectors.joining("; "));
+    }
+
+    @PreDestroy
+    public void logStats() {
+        log.info("Number extraction: {}", getStats());
+    }
+
+    private Optional<NumberOcrResult> original(Attempt attempt) {
+        OcrResultWord originalWord = attempt.word();
         String value = originalWord.getText();
-        // First attempt to parse big decimal as is
-        if (isFormatValid(expectedFormat, value)) {
-            return NumberOcrResult.of(toMyBigDecimal(value), originalWord.getWordRect());
+        if (isFormatValid(attempt.expectedFormat(), value)) {
+            return Optional.of(NumberOcrResult.of(toMyBigDecimal(value), originalWord.getWordRect()));
         }
 
-        triedValues.add("original: " + value);
-        return combineWithNextWord(originalWord, wordIndexInLine);
+        attempt.triedValues().add("original: " + value);
+        return Optional.empty();
     }
 
-    private NumberOcrResult combineWithNextWord(OcrResultWord originalWord, int wordIndexInLine) {
+    private Optional<NumberOcrResult> combineWithNextWord(Attempt attempt) {
+        OcrResultWord originalWord = attempt.word();
         String value = originalWord.getText();
         // Sometimes there is extra space wrongly detected: -0, 36
         // Try to combine those into one and use it as a value
@@ -48,49 +126,95 @@ public class ReceiptNumberExtractionChain {
         if (wordByWordNum.isPresent()) {
             OcrResultWord ocrResultWord = wordByWordNum.get();
             String combinedWords = value + ocrResultWord.getText();
-            if (isFormatValid(expectedFormat, combinedWords)) {
+            if (isFormatValid(attempt.expectedFormat(), combinedWords)) {
                 Rectangle wordRect = new Rectangle(originalWord.getWordRect());
                 wordRect.add(ocrResultWord.getWordRect());
-                return NumberOcrResult.of(
+                return Optional.of(NumberOcrResult.of(
                         toMyBigDecimal(combinedWords),
                         wordRect,
-                        1);
+                        1));
             }
 
-            triedValues.add("original combined with next: " + combinedWords);
+            attempt.triedValues().add("original combined with next: " + combinedWords);
         }
+        return Optional.empty();
+    }
 
-        return reOcrWordLocation(originalWord, wordIndexInLine);
+    /**
+     * Accepts a confusion corrected word only when it equals the value the other item numbers imply. Without that
+     * cross-check the word is left to re-OCR, a confident Tesseract read of a letter says nothing about the digit.
+     */
+    Optional<NumberOcrResult> correctOcrConfusions(Attempt attempt) {
+        BigDecimal expectedValue = attempt.expectedValue();
+        if (expectedValue == null) {
+            return Optional.empty();
+        }
+        OcrResultWord originalWord = attempt.word();
+        String corrected = correctOcrConfusions(originalWord.getText());
+        if (corrected == null || !isFormatValid(attempt.expectedFormat(), corrected)) {
+            return Optional.empty();
+        }
+        MyBigDecimal value = MyBigDecimal.value(corrected, originalWord.getText());
+        if (value.value().compareTo(expectedValue) != 0) {
+            attempt.triedValues().add("ocr confusions: " + corrected + " (expected " + expectedValue.toPlainString() + ")");
+            return Optional.empty();
+        }
+        return Optional.of(NumberOcrResult.of(value, originalWord.getWordRect()));
     }
 
-    private NumberOcrResult reOcrWordLocation(OcrResultWord originalWord, int wordIndexInLine) {
+    /**
+     * Accepts the value implied by the other numbers of the item when the word has exactly its digits and either no
+     * decimal separator, as when OCR lost it, or one at the scale of the expected value. A separator in another place
+     * is a different number, not a lost one.
+     */
+    Optional<NumberOcrResult> matchExpectedValue(Attempt attempt) {
+        BigDecimal expectedValue = attempt.expectedValue();
+        if (expectedValue == null) {
+            return Optional.empty();
+        }
+        OcrResultWord originalWord = attempt.word();
+        String corrected = correctOcrConfusions(originalWord.getText());
+        String text = corrected == null ? originalWord.getText() : corrected;
+        String digits = stripLeadingZeros(text.replaceAll("\\D", ""));
+        String expectedDigits = stripLeadingZeros(expectedValue.abs().unscaledValue().toString());
+        if (digits.equals(expectedDigits) && isSeparatorAtScale(text, expectedValue.scale())) {
+            return Optional.of(NumberOcrResult.of(new MyBigDecimal(expectedValue, originalWord.getText(), null), originalWord.getWordRect()));
+        }
+
+        attempt.triedValues().add("arithmetic: expected " + expectedValue.toPlainString());
+        return Optional.empty();
+    }
+
+    private Optional<NumberOcrResult> reOcrWordLocation(Attempt attempt) {
         String value = null;
-        Rectangle originalWordRectangle = originalWord.getWordRect();
+        Rectangle originalWordRectangle = attempt.word().getWordRect();
+        RimiContext context = attempt.context();
         try {
             OcrConfig ocrConfig = OcrConfig
-                    .builder(context.getOriginFile().preprocessedTiff())
+                    .builder(context.getImageSession())
                     .ocrDigitsOnly(true)
                     .ocrArea(originalWordRectangle)
                     .build();
             value = context.getTesseract().doOCR(ocrConfig);
-            if (isFormatValid(expectedFormat, value)) {
-                return NumberOcrResult.of(toMyBigDecimal(value), originalWordRectangle);
+            if (isFormatValid(attempt.expectedFormat(), value)) {
+                return Optional.of(NumberOcrResult.of(toMyBigDecimal(value), originalWordRectangle));
             }
         } catch (TesseractException ex) {
             log.error(ex.getMessage(), ex);
         }
 
-        triedValues.add("re-ocr word: " + value);
-
-        return reOcrWordLine(originalWord, wordIndexInLine);
+        attempt.triedValues().add("re-ocr word: " + value);
+        return Optional.empty();
     }
 
-    private NumberOcrResult reOcrWordLine(OcrResultWord originalWord, int wordIndexInLine) {
+    private Optional<NumberOcrResult> reOcrWordLine(Attempt attempt) {
+        OcrResultWord originalWord = attempt.word();
+        RimiContext context = attempt.context();
         OcrResultLine line = null;
         String text;
         try {
             OcrConfig ocrConfig = OcrConfig
-                    .builder(context.getOriginFile().preprocessedTiff())
+                    .builder(context.getImageSession())
                     .ocrArea(originalWord.getParentLine().getRectangle())
                     .ocrToTsv(true)
                     .build();
@@ -99,20 +223,69 @@ public class ReceiptNumberExtractionChain {
             OcrTsvResult ocrTsvResult = tsvParser.parse(tsvText);
             List<OcrResultLine> lines = ocrTsvResult.getLines();
             line = lines.get(lines.size() - 1);     // Rectangle of line is streched up, touching previous line, that appears here as well.
-            Optional<OcrResultWord> wordByWordNum = line.getWordByIndex(wordIndexInLine);
+            Optional<OcrResultWord> wordByWordNum = line.getWordByIndex(attempt.wordIndexInLine());
             if (wordByWordNum.isPresent()) {
                 OcrResultWord ocrResultWord = wordByWordNum.get();
                 text = ocrResultWord.getText();
-                if (isFormatValid(expectedFormat, text)) {
-                    return NumberOcrResult.of(toMyBigDecimal(text), ocrResultWord.getWordRect());
+                if (isFormatValid(attempt.expectedFormat(), text)) {
+                    return Optional.of(NumberOcrResult.of(toMyBigDecimal(text), ocrResultWord.getWordRect()));
                 }
             }
-            triedValues.add("re-ocr line: idx=" + originalWord.getWordNum() + "; line=" + line.getText());
+            attempt.triedValues().add("re-ocr line: idx=" + originalWord.getWordNum() + "; line=" + line.getText());
         } catch (Exception ex) {
-            triedValues.add(ex.getMessage());
+            attempt.triedValues().add(ex.getMessage());
             log.error(ex.getMessage(), ex);
         }
+        return Optional.empty();
+    }
+
+    /**
+     * Replaces letters Tesseract commonly reads instead of digits. Returns {@code null} when nothing changed or the
+     * word holds any other character than digits, signs, separators and the known confusions.
+     */
+    static String correctOcrConfusions(String text) {
+        StringBuilder corrected = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isDigit(c) || c == '-' || c == '+') {
+                corrected.append(c);
+            } else if (c == '.' || c == ',') {
+                corrected.append('.');
+            } else if (OCR_CONFUSIONS.containsKey(c)) {
+                corrected.append(OCR_CONFUSIONS.get(c));
+            } else {
+                return null;
+            }
+        }
+        String result = corrected.toString();
+        return result.equals(text.replace(',', '.')) ? null : result;
+    }
+
+    private static boolean isSeparatorAtScale(String text, int scale) {
+        int separator = Math.max(text.lastIndexOf('.'), text.lastIndexOf(','));
+        if (separator < 0) {
+            return true;
+        }
+        String integerPart = text.substring(0, separator);
+        if (integerPart.indexOf('.') >= 0 || integerPart.indexOf(',') >= 0) {
+            return false;
+        }
+        return text.substring(separator + 1).replaceAll("\\D", "").length() == scale;
+    }
+
+    private static String stripLeadingZeros(String digits) {
+        int i = 0;
+        while (i < digits.length() - 1 && digits.charAt(i) == '0') {
+            i++;
+        }
+        return digits.substring(i);
+    }
+
+    private record Strategy(String name,
+                            NumberExtractionStrategy strategy,
+                            LongAdder calls,
+                            LongAdder hits,
+                            LongAdder nanos) {
 
-        return NumberOcrResult.ofError("Failed to extract number", triedValues);
     }
 }
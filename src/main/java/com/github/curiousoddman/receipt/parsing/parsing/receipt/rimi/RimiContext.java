@@ -4,31 +4,39 @@ import com.github.curiousoddman.receipt.parsing.model.OriginFile;
 import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.OcrTsvResult;
 import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.OcrResultLine;
 import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.OcrResultWord;
+import com.github.curiousoddman.receipt.parsing.ocr.OcrImageSession;
 import com.github.curiousoddman.receipt.parsing.ocr.OcrService;
 import lombok.Data;
-import lombok.RequiredArgsConstructor;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.regex.Pattern;
 
 @Data
-@RequiredArgsConstructor
 public class RimiContext {
-    private final OriginFile   originFile;
-    private final OcrTsvResult ocrTsvResult;
-    private final OcrService   tesseract;
+    private final OriginFile      originFile;
+    private final OcrTsvResult    ocrTsvResult;
+    private final OcrService      tesseract;
+    private final OcrImageSession imageSession;
+    private final RimiLineIndex   lineIndex;
 
     private Optional<OcrResultWord> paymentAmount;
     private Optional<OcrResultWord> totalAmount;
     private Optional<OcrResultWord> bankCardAmount;
 
+    public RimiContext(OriginFile originFile, OcrTsvResult ocrTsvResult, OcrService tesseract, OcrImageSession imageSession) {
+        this.originFile = originFile;
+        this.ocrTsvResult = ocrTsvResult;
+        this.tesseract = tesseract;
+        this.imageSession = imageSession;
+        this.lineIndex = new RimiLineIndex(ocrTsvResult.getLines());
+    }
+
     public OcrResultLine getLineContaining(String text, int index) {
-        List<OcrResultLine> linesContaining = getLinesContaining(text);
-        if (linesContaining.size() > index) {
-            return linesContaining.get(index);
+        int[] indices = lineIndex.containing(text);
+        if (indices.length > index) {
+            return lineIndex.line(indices[index]);
         } else {
             return null;
         }
@@ -36,24 +44,24 @@ public class RimiContext {
 
     public List<OcrResultLine> getNextLinesAfterMatching(Pattern pattern, int count) {
         List<OcrResultLine> result = new ArrayList<>();
-        Iterator<OcrResultLine> iterator = ocrTsvResult.getLines().iterator();
-        int found = -1;
-        while (iterator.hasNext()) {
-            OcrResultLine line = iterator.next();
-            if (line.isBlank()) {
+        int first = firstNonBlank(lineIndex.matching(pattern));
+        if (first < 0) {
+            return result;
+        }
+        int found = 0;
+        for (int i = first + 1; i < lineIndex.size(); i++) {
+            if (lineIndex.isBlank(i)) {
                 continue;
             }
 
-            if (found >= 0) {
-                if (found == count) {
-                    return result;
-                } else {
-                    found++;
-                    result.add(line);
-                }
+            if (found == count) {
+                return result;
+            } else {
+                found++;
+                result.add(lineIndex.line(i));
             }
 
-            if (pattern.matcher(line.getText()).matches()) {
+            if (pattern.matcher(lineIndex.text(i)).matches()) {
                 found = 0;
             }
         }
@@ -61,45 +69,43 @@ public class RimiContext {
     }
 
     public Optional<OcrResultLine> getLineMatching(Pattern pattern, int index) {
-        List<OcrResultLine> linesContaining = getLinesMatching(pattern);
-        if (linesContaining.size() > index) {
-            return Optional.of(linesContaining.get(index));
+        int[] indices = lineIndex.matching(pattern);
+        if (indices.length > index) {
+            return Optional.of(lineIndex.line(indices[index]));
         } else {
             return Optional.empty();
         }
     }
 
     public List<OcrResultLine> getLinesContaining(String text) {
-        return ocrTsvResult
-                .getLines()
-                .stream()
-                .filter(line -> line.contains(text))
-                .toList();
+        return lineIndex.lines(lineIndex.containing(text));
     }
 
     public List<OcrResultLine> getLinesMatching(Pattern pattern) {
-        return ocrTsvResult
-                .getLines()
-                .stream()
-                .filter(line -> pattern.matcher(line.getText()).matches())
-                .toList();
+        return lineIndex.lines(lineIndex.matching(pattern));
     }
 
     public List<OcrResultLine> getLinesBetween(String beginning, String end) {
         List<OcrResultLine> result = new ArrayList<>();
-        Iterator<OcrResultLine> iterator = ocrTsvResult.getLines().iterator();
-        boolean addLines = false;
-        while (iterator.hasNext()) {
-            OcrResultLine line = iterator.next();
-            if (addLines) {
-                if (line.contains(end)) {
-                    return result;
-                }
-                result.add(line);
-            } else {
-                addLines = line.contains(beginning);
+        int[] beginnings = lineIndex.containing(beginning);
+        if (beginnings.length == 0) {
+            return result;
+        }
+        for (int i = beginnings[0] + 1; i < lineIndex.size(); i++) {
+            if (lineIndex.text(i).contains(end)) {
+                return result;
             }
+            result.add(lineIndex.line(i));
         }
         return result;
     }
+
+    private int firstNonBlank(int[] indices) {
+        for (int index : indices) {
+            if (!lineIndex.isBlank(index)) {
+                return index;
+            }
+        }
+        return -1;
+    }
 }
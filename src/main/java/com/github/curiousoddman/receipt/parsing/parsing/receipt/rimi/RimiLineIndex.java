@@ -0,0 +1,70 @@
+package com.github.curiousoddman.receipt.parsing.parsing.receipt.rimi;
+
+import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.OcrResultLine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
+
+/**
+ * Flat view of all lines of one receipt with their text joined once. Indices of lines matching a pattern
+ * or containing a literal are computed on first lookup and reused by every following lookup.
+ */
+class RimiLineIndex {
+    private static final int[] NONE = new int[0];
+
+    private final OcrResultLine[]     lines;
+    private final String[]            texts;
+    private final Map<Pattern, int[]> matching   = new ConcurrentHashMap<>();
+    private final Map<String, int[]>  containing = new ConcurrentHashMap<>();
+
+    RimiLineIndex(List<OcrResultLine> lines) {
+        this.lines = lines.toArray(OcrResultLine[]::new);
+        this.texts = new String[this.lines.length];
+        for (int i = 0; i < this.lines.length; i++) {
+            texts[i] = this.lines[i].getText();
+        }
+    }
+
+    int size() {
+        return lines.length;
+    }
+
+    OcrResultLine line(int index) {
+        return lines[index];
+    }
+
+    String text(int index) {
+        return texts[index];
+    }
+
+    boolean isBlank(int index) {
+        return texts[index].isBlank();
+    }
+
+    int[] matching(Pattern pattern) {
+        return matching.computeIfAbsent(pattern, p -> find(i -> p.matcher(texts[i]).matches()));
+    }
+
+    int[] containing(String text) {
+        return containing.computeIfAbsent(text, t -> find(i -> texts[i].contains(t)));
+    }
+
+    List<OcrResultLine> lines(int[] indices) {
+        return Arrays.stream(indices).mapToObj(i -> lines[i]).toList();
+    }
+
+    private int[] find(IntPredicate predicate) {
+        List<Integer> found = new ArrayList<>();
+        for (int i = 0; i < texts.length; i++) {
+            if (predicate.test(i)) {
+                found.add(i);
+            }
+        }
+        return found.isEmpty() ? NONE : found.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
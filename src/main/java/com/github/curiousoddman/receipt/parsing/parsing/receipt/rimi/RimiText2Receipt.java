@@ -1,13 +1,14 @@
 package com.github.curiousoddman.receipt.parsing.parsing.receipt.rimi;
 
+import com.github.curiousoddman.receipt.parsing.config.PipelineConfig;
 import com.github.curiousoddman.receipt.parsing.model.MyBigDecimal;
 import com.github.curiousoddman.receipt.parsing.model.MyLocalDateTime;
 import com.github.curiousoddman.receipt.parsing.model.Receipt;
 import com.github.curiousoddman.receipt.parsing.model.ReceiptItem;
 import com.github.curiousoddman.receipt.parsing.ocr.OcrConfig;
+import com.github.curiousoddman.receipt.parsing.ocr.OcrImageSession;
 import com.github.curiousoddman.receipt.parsing.ocr.OcrResult;
 import com.github.curiousoddman.receipt.parsing.ocr.OcrService;
-import com.github.curiousoddman.receipt.parsing.ocr.tsv.TsvParser;
 import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.OcrResultLine;
 import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.OcrResultWord;
 import com.github.curiousoddman.receipt.parsing.parsing.NumberOcrResult;
@@ -22,16 +23,20 @@ import net.sourceforge.tess4j.TesseractException;
 import org.apache.logging.log4j.util.Strings;
 import org.springframework.stereotype.Component;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.math.BigDecimal;
-import java.nio.file.Path;
+import java.math.RoundingMode;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.github.curiousoddman.receipt.parsing.utils.ConversionUtils.*;
 import static com.github.curiousoddman.receipt.parsing.utils.Patterns.*;
@@ -41,12 +46,17 @@ import static java.util.Objects.requireNonNullElse;
 @Component
 @RequiredArgsConstructor
 public class RimiText2Receipt {
+    /**
+     * Bump when a parsing change should make incremental runs parse cached receipts again.
+     */
+    public static final int PARSER_VERSION        = 1;
     public static final int RECEIPT_WIDTH_PX      = 1441;
     public static final int HALF_RECEIPT_WIDTH_PX = RECEIPT_WIDTH_PX / 2;
     public static final int X_IMG_PX_MAX          = 1300;
     public static final int X_IMG_PX_MIN          = 1260;
 
-    private final TsvParser tsvParser;
+    private final ReceiptNumberExtractionChain numberExtractionChain;
+    private final PipelineConfig               pipelineConfig;
 
     public Receipt parse(String fileName,
                          OcrResult ocrResult,
@@ -54,8 +64,17 @@ public class RimiText2Receipt {
         RimiContext context = new RimiContext(
                 ocrResult.originFile(),
                 ocrResult.ocrTsvResult(),
-                ocrService
+                ocrService,
+                ocrResult.imageSession()
         );
+        Receipt receipt = pipelineConfig.isParallelFieldExtraction()
+                ? parseFieldsInParallel(fileName, context)
+                : parseFields(fileName, context);
+        log.info("Receipt image decoded {} time(s)", context.getImageSession().getDecodeCount());
+        return receipt;
+    }
+
+    private Receipt parseFields(String fileName, RimiContext context) {
         return Receipt
                 .builder()
                 .fileName(fileName)
@@ -75,6 +94,63 @@ public class RimiText2Receipt {
                 .build();
     }
 
+    /**
+     * Runs every field extractor on its own virtual thread, so the region re-OCR calls of different fields borrow
+     * separate engines from the pool and overlap. The extractors only read the shared context, and the results are
+     * joined in the same order as {@link #parseFields}, so the receipt is identical to the sequential one.
+     */
+    private Receipt parseFieldsInParallel(String fileName, RimiContext context) {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> shopName = executor.submit(() -> getShopName(context));
+            Future<String> cashRegisterNumber = executor.submit(() -> getCashRegisterNumber(context));
+            Future<MyBigDecimal> totalSavings = executor.submit(() -> getTotalSavings(context));
+            Future<MyBigDecimal> totalAmount = executor.submit(() -> getTotalAmount(context));
+            Future<MyBigDecimal> totalPayment = executor.submit(() -> getTotalPayment(context));
+            Future<MyBigDecimal> usedShopBrandMoney = executor.submit(() -> getUsedShopBrandMoney(context));
+            Future<MyBigDecimal> shopBrandMoneyAccumulated = executor.submit(() -> getShopBrandMoneyAccumulated(context));
+            Future<String> documentNumber = executor.submit(() -> getDocumentNumber(context));
+            Future<MyLocalDateTime> receiptDateTime = executor.submit(() -> getReceiptDateTime(context));
+            Future<Map<String, MyBigDecimal>> discounts = executor.submit(() -> getDiscounts(context));
+            Future<Collection<? extends ReceiptItem>> items = executor.submit(() -> getItems(context));
+            Future<Map<String, List<MyBigDecimal>>> paymentMethods = executor.submit(() -> getPaymentMethods(context));
+            try {
+                return Receipt
+                        .builder()
+                        .fileName(fileName)
+                        .shopBrand("Rimi")
+                        .shopName(join(shopName))
+                        .cashRegisterNumber(join(cashRegisterNumber))
+                        .totalSavings(join(totalSavings))
+                        .totalAmount(join(totalAmount))
+                        .totalPayment(join(totalPayment))
+                        .usedShopBrandMoney(join(usedShopBrandMoney))
+                        .shopBrandMoneyAccumulated(join(shopBrandMoneyAccumulated))
+                        .documentNumber(join(documentNumber))
+                        .receiptDateTime(join(receiptDateTime))
+                        .discounts(join(discounts))
+                        .items(join(items))
+                        .paymentMethods(join(paymentMethods))
+                        .build();
+            } catch (Throwable e) {
+                // join rethrows checked causes and errors too, none of them may leave close() waiting for the rest
+                executor.shutdownNow();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Waits for a field extractor and rethrows its failure unwrapped, as the sequential mode would throw it.
+     */
+    @SneakyThrows
+    private static <T> T join(Future<T> field) {
+        try {
+            return field.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
     protected Map<String, List<MyBigDecimal>> getPaymentMethods(RimiContext context) {
         ListValueHashMap<String, MyBigDecimal> result = new ListValueHashMap<>();
 
@@ -190,7 +266,7 @@ public class RimiText2Receipt {
         OcrResultWord ocrResultWord = wordFromMatchingLine.get();
         OcrResultLine parentLine = ocrResultWord.getParentLine();
         OcrConfig routineRetryOcrConfig = OcrConfig
-                .builder(context.getOriginFile().preprocessedTiff())
+                .builder(context.getImageSession())
                 .ocrDigitsOnly(true)
                 .ocrArea(new Rectangle(HALF_RECEIPT_WIDTH_PX, parentLine.getY(), HALF_RECEIPT_WIDTH_PX, parentLine.getHeight()))
                 .build();
@@ -216,7 +292,7 @@ public class RimiText2Receipt {
 
         OcrResultLine matchingLine = optionalMatchingLine.get();
         OcrConfig routineRetryOcrConfig = OcrConfig
-                .builder(context.getOriginFile().preprocessedTiff())
+                .builder(context.getImageSession())
                 .ocrDigitsOnly(true)
                 .ocrArea(new Rectangle(HALF_RECEIPT_WIDTH_PX, matchingLine.getY(), HALF_RECEIPT_WIDTH_PX, matchingLine.getHeight()))
                 .build();
@@ -274,6 +350,7 @@ public class RimiText2Receipt {
 
     protected Collection<? extends ReceiptItem> getItems(RimiContext context) {
         List<ReceiptItem> items = new ArrayList<>();
+        List<PendingRetry> pendingRetries = new ArrayList<>();
         List<OcrResultLine> linesBetween = context.getLinesBetween("KLIENTS:", "Maksājumu karte");
         if (linesBetween.isEmpty()) {
             linesBetween = context.getLinesBetween("XXXXXXXXXXXXXXX3991", "Maksājumu karte");
@@ -325,8 +402,8 @@ public class RimiText2Receipt {
                         if (ItemNumbersValidator.isItemValid(itemResult.getReceiptItem())) {
                             items.add(itemResult.getReceiptItem());
                         } else {
-                            ReceiptItem item = tryOcrNumbersAgain(context, itemResult);
-                            items.add(item);
+                            pendingRetries.add(new PendingRetry(items.size(), itemResult));
+                            items.add(itemResult.getReceiptItem());
                         }
                     }
                     priceLine = null;
@@ -338,6 +415,7 @@ public class RimiText2Receipt {
                 }
             }
         }
+        tryOcrNumbersAgain(context, items, pendingRetries);
         return items;
     }
 
@@ -371,12 +449,14 @@ public class RimiText2Receipt {
         NumberOcrResult finalCostOcrResult;
         NumberOcrResult discountOcrResult = NumberOcrResult.of(MyBigDecimal.zero(), null);
         if (discountLine != null) {
-            finalCostOcrResult = getNumberFromReceiptAndReportError(discountLine.getWordByIndex(-1), MONEY_AMOUNT, context, -1);
             discountOcrResult = getNumberFromReceiptAndReportError(discountLine.getWordByWordNum(2), MONEY_AMOUNT, context, 1);
+            BigDecimal expectedFinalCost = getExpectedFinalCost(countOcrResult, pricePerUnitOcrResult, discountOcrResult);
+            finalCostOcrResult = getNumberFromReceiptAndReportError(discountLine.getWordByIndex(-1), MONEY_AMOUNT, expectedFinalCost, context, -1);
         } else {
             int additionalWordIndexOffset = countOcrResult.getSubsequentWordIndexOffset() + pricePerUnitOcrResult.getSubsequentWordIndexOffset();
             Optional<OcrResultWord> finalCostGroupValue = priceLine.getWordByWordNum(6 + additionalWordIndexOffset);
-            finalCostOcrResult = getNumberFromReceiptAndReportError(finalCostGroupValue, MONEY_AMOUNT, context, 5 + additionalWordIndexOffset);
+            BigDecimal expectedFinalCost = getExpectedFinalCost(countOcrResult, pricePerUnitOcrResult, discountOcrResult);
+            finalCostOcrResult = getNumberFromReceiptAndReportError(finalCostGroupValue, MONEY_AMOUNT, expectedFinalCost, context, 5 + additionalWordIndexOffset);
         }
 
         MyBigDecimal discountNumber = discountOcrResult.getNumber();
@@ -403,6 +483,20 @@ public class RimiText2Receipt {
         );
     }
 
+    /**
+     * Final cost implied by count, price per unit and discount, or {@code null} when one of them could not be read.
+     * The discount may be read with or without its minus sign.
+     */
+    private static BigDecimal getExpectedFinalCost(NumberOcrResult count, NumberOcrResult pricePerUnit, NumberOcrResult discount) {
+        if (count.isError() || pricePerUnit.isError() || discount.isError()) {
+            return null;
+        }
+        return count.getNumber().value()
+                    .multiply(pricePerUnit.getNumber().value())
+                    .subtract(discount.getNumber().value().abs())
+                    .setScale(2, RoundingMode.HALF_UP);
+    }
+
     private static Pattern getNumberPattern(String unitsWord) {
         return switch (unitsWord.toLowerCase(Locale.ROOT)) {
             case "gab", "iep" -> INTEGER;
@@ -410,67 +504,97 @@ public class RimiText2Receipt {
         };
     }
 
-    private ReceiptItem tryOcrNumbersAgain(RimiContext context, ReceiptItemResult receiptItemResult) {
-        List<OcrResultWithSetter> allNumbers = List.of(
-                new OcrResultWithSetter("Discount", receiptItemResult.getDiscountOcrResult(), ReceiptItem::setDiscount),
-                new OcrResultWithSetter("Final Cost", receiptItemResult.getFinalCostOcrResult(), ReceiptItem::setFinalCost),
-                new OcrResultWithSetter("Price per unit", receiptItemResult.getPricePerUnitOcrResult(), ReceiptItem::setPricePerUnit),
-                new OcrResultWithSetter("Count", receiptItemResult.getCountOcrResult(), ReceiptItem::setCount)
-        );
-        for (OcrResultWithSetter rnWithSetter : allNumbers) {
-            NumberOcrResult ocrResult = rnWithSetter.ocrResult();
-            if (ocrResult.getLocation() == null) {
-                log.error("Location is not present");
-                continue;
+    /**
+     * Re-OCRs the located numbers of all invalid items in rounds. Each round re-reads, in one batch, the next number of
+     * every item that is still invalid, so an item stops costing OCR calls at the first number that makes it valid.
+     */
+    private void tryOcrNumbersAgain(RimiContext context, List<ReceiptItem> items, List<PendingRetry> pendingRetries) {
+        List<List<OcrResultWithSetter>> locatedNumbers = new ArrayList<>();
+        for (PendingRetry pendingRetry : pendingRetries) {
+            List<OcrResultWithSetter> located = new ArrayList<>();
+            for (OcrResultWithSetter rnWithSetter : getAllNumbers(pendingRetry.itemResult())) {
+                if (rnWithSetter.ocrResult().getLocation() == null) {
+                    log.error("Location is not present");
+                    continue;
+                }
+                located.add(rnWithSetter);
             }
-            BiConsumer<ReceiptItem, MyBigDecimal> setter = rnWithSetter.setter();
-            Path path = refineLine(ocrResult.getLocation(), context);
-            String newValue = null;
-            try {
-                OcrConfig ocrConfig;
-                if (path == null) {
-                    ocrConfig = OcrConfig
-                            .builder(context.getOriginFile().preprocessedTiff())
-                            .ocrDigitsOnly(true)
-                            .ocrArea(ocrResult.getLocation())
-                            .build();
-                } else {
-                    ocrConfig = OcrConfig
-                            .builder(path)
-                            .ocrDigitsOnly(true)
-                            .build();
+            locatedNumbers.add(located);
+        }
+
+        List<Integer> unfixed = new ArrayList<>(IntStream.range(0, pendingRetries.size()).boxed().toList());
+        for (int round = 0; !unfixed.isEmpty(); round++) {
+            List<Integer> retried = new ArrayList<>();
+            List<OcrConfig> ocrConfigs = new ArrayList<>();
+            for (int i : unfixed) {
+                if (round < locatedNumbers.get(i).size()) {
+                    retried.add(i);
+                    ocrConfigs.add(getDigitsOnlyOcrConfig(locatedNumbers.get(i).get(round).ocrResult().getLocation(), context));
                 }
+            }
+            if (retried.isEmpty()) {
+                break;
+            }
 
-                newValue = context.getTesseract().doOCR(ocrConfig);
+            List<String> newValues;
+            try {
+                newValues = context.getTesseract().doOCR(ocrConfigs);
             } catch (TesseractException e) {
                 log.error("Failed to re-ocr item numbers", e);
-                receiptItemResult.getReceiptItem().setErrorMessage(e.getMessage());
-                return receiptItemResult.getReceiptItem();
+                retried.forEach(i -> items.get(pendingRetries.get(i).index()).setErrorMessage(e.getMessage()));
+                unfixed.removeAll(retried);
+                continue;
             }
-            ReceiptItem itemCopy = receiptItemResult.getReceiptItem().toBuilder().build();
-            setter.accept(itemCopy, toMyBigDecimal(newValue));
-            if (ItemNumbersValidator.isItemValid(itemCopy)) {
-                log.info("Fixed item from \n\told:{}\n\tfix:{}", receiptItemResult.getReceiptItem(), itemCopy);
-                return itemCopy;
+
+            for (int r = 0; r < retried.size(); r++) {
+                int i = retried.get(r);
+                int itemIndex = pendingRetries.get(i).index();
+                ReceiptItem item = items.get(itemIndex);
+                ReceiptItem itemCopy = item.toBuilder().build();
+                locatedNumbers.get(i).get(round).setter().accept(itemCopy, toMyBigDecimal(newValues.get(r)));
+                if (ItemNumbersValidator.isItemValid(itemCopy)) {
+                    log.info("Fixed item from \n\told:{}\n\tfix:{}", item, itemCopy);
+                    items.set(itemIndex, itemCopy);
+                    unfixed.remove(Integer.valueOf(i));
+                }
             }
         }
+        unfixed.forEach(i -> log.info("Unable to fix the item"));
+    }
 
-        log.info("Unable to fix the item");
-        return receiptItemResult.getReceiptItem();
+    private static List<OcrResultWithSetter> getAllNumbers(ReceiptItemResult receiptItemResult) {
+        return List.of(
+                new OcrResultWithSetter("Discount", receiptItemResult.getDiscountOcrResult(), ReceiptItem::setDiscount),
+                new OcrResultWithSetter("Final Cost", receiptItemResult.getFinalCostOcrResult(), ReceiptItem::setFinalCost),
+                new OcrResultWithSetter("Price per unit", receiptItemResult.getPricePerUnitOcrResult(), ReceiptItem::setPricePerUnit),
+                new OcrResultWithSetter("Count", receiptItemResult.getCountOcrResult(), ReceiptItem::setCount)
+        );
     }
 
-    @SneakyThrows
-    private static Path refineLine(Rectangle wordRect, RimiContext context) {
-        Path path = context.getOriginFile().preprocessedTiff();
-        BufferedImage inputImage = ImageIO.read(path.toFile());
+    private static OcrConfig getDigitsOnlyOcrConfig(Rectangle location, RimiContext context) {
+        // A refined region has its own pixels, so only unrefined regions share the page image in a batch
+        OcrImageSession refinedImage = refineLine(location, context);
+        if (refinedImage == null) {
+            return OcrConfig
+                    .builder(context.getImageSession())
+                    .ocrDigitsOnly(true)
+                    .ocrArea(location)
+                    .build();
+        }
+        return OcrConfig
+                .builder(refinedImage)
+                .ocrDigitsOnly(true)
+                .build();
+    }
+
+    private static OcrImageSession refineLine(Rectangle wordRect, RimiContext context) {
+        BufferedImage inputImage = context.getImageSession().getPages().get(0).image();
         BufferedImage subimage = inputImage.getSubimage(wordRect.x, wordRect.y, wordRect.width, wordRect.height);
         BufferedImage bufferedImage = ImageUtils.getImageWithLineWithMostBlackPixels(subimage);
         if (bufferedImage == subimage) {
             return null;
         }
-        Path rectangledFileName = Path.of(path + String.format("_%d_%d_%d_%d.tiff", wordRect.x, wordRect.y, wordRect.width, wordRect.height));
-        ImageIO.write(bufferedImage, "tiff", rectangledFileName.toFile());
-        return rectangledFileName;
+        return OcrImageSession.of(bufferedImage);
     }
 
     @Data
@@ -484,6 +608,10 @@ public class RimiText2Receipt {
 
     }
 
+    private record PendingRetry(int index, ReceiptItemResult itemResult) {
+
+    }
+
     private static Optional<OcrResultWord> getWordFromMatchingLine(RimiContext context, Pattern pattern, int wordIndex) {
         return context
                 .getLineMatching(pattern, 0)
@@ -499,9 +627,18 @@ public class RimiText2Receipt {
                                                                Pattern expectedFormat,
                                                                RimiContext context,
                                                                int wordIndexInLine) {
+        return getNumberFromReceiptAndReportError(word, expectedFormat, null, context, wordIndexInLine);
+    }
+
+    private NumberOcrResult getNumberFromReceiptAndReportError(Optional<OcrResultWord> word,
+                                                               Pattern expectedFormat,
+                                                               BigDecimal expectedValue,
+                                                               RimiContext context,
+                                                               int wordIndexInLine) {
         return word
                 .map(w -> getNumberFromReceiptAndReportError(w,
                                                              expectedFormat,
+                                                             expectedValue,
                                                              context,
                                                              wordIndexInLine
                 ))
@@ -512,14 +649,15 @@ public class RimiText2Receipt {
                                                                Pattern expectedFormat,
                                                                RimiContext context,
                                                                int wordIndexInLine) {
+        return getNumberFromReceiptAndReportError(originalWord, expectedFormat, null, context, wordIndexInLine);
+    }
 
-        ReceiptNumberExtractionChain receiptNumberExtractionChain = new ReceiptNumberExtractionChain(
-                expectedFormat,
-                context,
-                tsvParser
-        );
-
-        NumberOcrResult numberOcrResult = receiptNumberExtractionChain.parse(originalWord, wordIndexInLine);
+    private NumberOcrResult getNumberFromReceiptAndReportError(OcrResultWord originalWord,
+                                                               Pattern expectedFormat,
+                                                               BigDecimal expectedValue,
+                                                               RimiContext context,
+                                                               int wordIndexInLine) {
+        NumberOcrResult numberOcrResult = numberExtractionChain.parse(originalWord, wordIndexInLine, expectedFormat, expectedValue, context);
         if (numberOcrResult.isError()) {
             numberOcrResult.reportError();
         }
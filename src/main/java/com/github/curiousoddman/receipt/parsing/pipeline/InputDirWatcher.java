@@ -0,0 +1,128 @@
+package com.github.curiousoddman.receipt.parsing.pipeline;
+
+import com.github.curiousoddman.receipt.parsing.utils.PathsUtils;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Feeds PDFs appearing in the input directory into a running pipeline. A file is submitted once its size and
+ * modification time have not changed for the quiet period, so files that are still being written are not picked up.
+ */
+@Slf4j
+public class InputDirWatcher implements Closeable {
+    private final Path                   inputDir;
+    private final long                   quietPeriodNanos;
+    private final Consumer<Path>         onFileReady;
+    private final Runnable               afterPoll;
+    private final WatchService           watchService;
+    private final Map<Path, PendingFile> pendingFiles = new HashMap<>();
+
+    @SneakyThrows
+    public InputDirWatcher(Path inputDir, Duration quietPeriod, Consumer<Path> onFileReady, Runnable afterPoll) {
+        this.inputDir = inputDir;
+        this.quietPeriodNanos = quietPeriod.toNanos();
+        this.onFileReady = onFileReady;
+        this.afterPoll = afterPoll;
+        this.watchService = inputDir.getFileSystem().newWatchService();
+        inputDir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, OVERFLOW);
+        // Registered before listing, so files arriving meanwhile are not missed
+        addExistingFiles();
+    }
+
+    /**
+     * Runs until the thread is interrupted or the watcher is closed.
+     */
+    public void run() {
+        log.info("Watching {} for new receipts", inputDir);
+        long pollMillis = Math.max(100, TimeUnit.NANOSECONDS.toMillis(quietPeriodNanos) / 2);
+        try {
+            while (true) {
+                WatchKey key = watchService.poll(pollMillis, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == OVERFLOW) {
+                            addExistingFiles();
+                        } else {
+                            addPendingFile(inputDir.resolve((Path) event.context()));
+                        }
+                    }
+                    if (!key.reset()) {
+                        log.error("Input directory {} is no longer accessible", inputDir);
+                        return;
+                    }
+                }
+                submitReadyFiles();
+                afterPoll.run();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Closed from another thread
+        }
+        log.info("Stopped watching {}", inputDir);
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    @SneakyThrows
+    private void addExistingFiles() {
+        try (Stream<Path> files = Files.list(inputDir)) {
+            files.forEach(this::addPendingFile);
+        }
+    }
+
+    private void addPendingFile(Path file) {
+        if (PathsUtils.isPdfFile(file)) {
+            pendingFiles.putIfAbsent(file, new PendingFile(-1, null, System.nanoTime()));
+        }
+    }
+
+    private void submitReadyFiles() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Path, PendingFile>> iterator = pendingFiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, PendingFile> entry = iterator.next();
+            Path file = entry.getKey();
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (IOException e) {
+                // Deleted or renamed before it settled
+                iterator.remove();
+                continue;
+            }
+            PendingFile pending = entry.getValue();
+            if (attributes.size() != pending.size() || !attributes.lastModifiedTime().equals(pending.lastModified())) {
+                entry.setValue(new PendingFile(attributes.size(), attributes.lastModifiedTime(), now));
+            } else if (now - pending.changedAtNanos() >= quietPeriodNanos) {
+                iterator.remove();
+                log.info("New receipt {}", file.getFileName());
+                onFileReady.accept(file);
+            }
+        }
+    }
+
+    private record PendingFile(long size,
+                               FileTime lastModified,
+                               long changedAtNanos) {
+
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.curiousoddman.receipt.parsing.pipeline;
+
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Fixed number of worker threads taking items from a bounded queue. {@link #put} blocks while the queue is full,
+ * which is what pushes back on the stage before it.
+ */
+@Slf4j
+class PipelineStage<T> {
+    private final BlockingQueue<T> queue;
+    private final List<Thread>     workers = new ArrayList<>();
+    private final Consumer<T>      action;
+    private volatile boolean       closed;
+
+    PipelineStage(String name, int threads, int queueCapacity, Consumer<T> action) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.action = action;
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(this::work, name + "-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    @SneakyThrows
+    void put(T item) {
+        queue.put(item);
+    }
+
+    @SneakyThrows
+    void awaitCompletion() {
+        closed = true;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private void work() {
+        try {
+            while (!closed || !queue.isEmpty()) {
+                T item = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (item != null) {
+                    action.accept(item);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.curiousoddman.receipt.parsing.pipeline;
+
+import com.github.curiousoddman.receipt.parsing.model.Receipt;
+import com.github.curiousoddman.receipt.parsing.ocr.OcrJob;
+import com.github.curiousoddman.receipt.parsing.utils.FileUtils;
+import lombok.Data;
+
+import java.nio.file.Path;
+
+@Data
+public class ReceiptJob {
+    private final Path   pdfFile;
+    private final String sourcePdfName;
+
+    private byte[]  pdfChecksum;
+    private OcrJob  ocrJob;
+    private Receipt receipt;
+
+    public ReceiptJob(Path pdfFile) {
+        this.pdfFile = pdfFile;
+        this.sourcePdfName = pdfFile.getFileName().toString();
+    }
+
+    public byte[] getPdfChecksum() {
+        if (pdfChecksum == null) {
+            pdfChecksum = FileUtils.sha256(pdfFile);
+        }
+        return pdfChecksum;
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.curiousoddman.receipt.parsing.pipeline;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.github.curiousoddman.receipt.parsing.utils.PathsUtils;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.github.curiousoddman.receipt.parsing.parsing.receipt.rimi.RimiText2Receipt.PARSER_VERSION;
+import static com.github.curiousoddman.receipt.parsing.utils.JsonUtils.OBJECT_MAPPER;
+import static com.github.curiousoddman.receipt.parsing.utils.JsonUtils.OBJECT_WRITER;
+import static com.github.curiousoddman.receipt.parsing.validation.ValidationExecutor.VALIDATOR_VERSION;
+
+/**
+ * What was produced for every input PDF, so incremental runs can skip receipts whose content,
+ * OCR settings, parser and validators have not changed since.
+ */
+@Slf4j
+@Component
+public class ReceiptManifest {
+    private final Path               manifestPath;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean      changed = new AtomicBoolean();
+
+    @SneakyThrows
+    public ReceiptManifest(PathsUtils pathsUtils) {
+        manifestPath = pathsUtils.getManifestPath();
+        if (Files.exists(manifestPath)) {
+            entries.putAll(OBJECT_MAPPER.readValue(manifestPath.toFile(), new TypeReference<Map<String, Entry>>() {
+            }));
+            log.info("Loaded manifest with {} receipts", entries.size());
+        }
+    }
+
+    public boolean isUpToDate(String fileName, String pdfSha256, String ocrSettings) {
+        Entry entry = entries.get(fileName);
+        return entry != null
+                && entry.pdfSha256().equals(pdfSha256)
+                && ocrSettings.equals(entry.ocrSettings())
+                && entry.parserVersion() == PARSER_VERSION
+                && entry.validatorVersion() == VALIDATOR_VERSION
+                && Files.exists(Path.of(entry.receiptJson()));
+    }
+
+    public void record(String fileName, String pdfSha256, String ocrSettings, Path receiptJson, boolean valid) {
+        entries.put(fileName, new Entry(pdfSha256, ocrSettings, PARSER_VERSION, VALIDATOR_VERSION, receiptJson.toAbsolutePath().toString(), valid));
+        changed.set(true);
+    }
+
+    /**
+     * Saves the manifest if a receipt was recorded since the last save, returns whether it did.
+     */
+    public boolean saveIfChanged() {
+        if (!changed.getAndSet(false)) {
+            return false;
+        }
+        save();
+        return true;
+    }
+
+    @SneakyThrows
+    public synchronized void save() {
+        Path tempFile = manifestPath.resolveSibling(manifestPath.getFileName() + ".tmp");
+        Files.writeString(tempFile, OBJECT_WRITER.writeValueAsString(new TreeMap<>(entries)));
+        Files.move(tempFile, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param ocrSettings fingerprint of the OCR cache settings, entries written before it was recorded have none
+     */
+    public record Entry(String pdfSha256,
+                        String ocrSettings,
+                        int parserVersion,
+                        int validatorVersion,
+                        String receiptJson,
+                        boolean valid) {
+
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.curiousoddman.receipt.parsing.pipeline;
+
+import java.nio.file.Path;
+
+public interface ReceiptPipeline {
+    /**
+     * Queues the PDF for processing, blocking while the pipeline is full.
+     */
+    void submit(Path pdfFile);
+
+    /**
+     * Waits until every submitted PDF has been processed and stops the pipeline.
+     */
+    void awaitCompletion();
+}
@@ -0,0 +1,107 @@
+package com.github.curiousoddman.receipt.parsing.pipeline;
+
+import com.github.curiousoddman.receipt.parsing.IgnoreList;
+import com.github.curiousoddman.receipt.parsing.Whitelist;
+import com.github.curiousoddman.receipt.parsing.config.PipelineConfig;
+import com.github.curiousoddman.receipt.parsing.model.Receipt;
+import com.github.curiousoddman.receipt.parsing.ocr.OcrJob;
+import com.github.curiousoddman.receipt.parsing.ocr.OcrResult;
+import com.github.curiousoddman.receipt.parsing.ocr.OcrServiceProvider;
+import com.github.curiousoddman.receipt.parsing.parsing.receipt.rimi.RimiText2Receipt;
+import com.github.curiousoddman.receipt.parsing.utils.FileUtils;
+import com.github.curiousoddman.receipt.parsing.validation.ValidationExecutor;
+import com.github.curiousoddman.receipt.parsing.validation.ValidationStatsCollector;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.github.curiousoddman.receipt.parsing.utils.JsonUtils.OBJECT_WRITER;
+
+/**
+ * Steps of turning one receipt PDF into a validated receipt, in the order the pipelines run them.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReceiptProcessor {
+    private final RimiText2Receipt   rimiText2Receipt;
+    private final IgnoreList         ignoreList;
+    private final Whitelist          whitelist;
+    private final ValidationExecutor validationExecutor;
+    private final OcrServiceProvider ocrServiceProvider;
+    private final PipelineConfig     pipelineConfig;
+    private final ReceiptManifest    receiptManifest;
+
+    public boolean accept(ReceiptJob job) {
+        String sourcePdfName = job.getSourcePdfName();
+        if (ignoreList.isIgnored(sourcePdfName)) {
+            log.info("Skipping file {} due to ignore list", sourcePdfName);
+            return false;
+        }
+        if (!whitelist.isWhitelisted(sourcePdfName)) {
+            return false;
+        }
+        if (pipelineConfig.isIncremental() && receiptManifest.isUpToDate(sourcePdfName, FileUtils.toHex(job.getPdfChecksum()), ocrServiceProvider.get().getOcrSettingsFingerprint())) {
+            log.debug("Skipping unchanged file {}", sourcePdfName);
+            return false;
+        }
+        return true;
+    }
+
+    public void startOcr(ReceiptJob job) {
+        log.info("Starting...");
+        job.setOcrJob(ocrServiceProvider.get().startOcr(job.getPdfFile(), job.getPdfChecksum()));
+    }
+
+    public boolean isOcrDone(ReceiptJob job) {
+        return job.getOcrJob().isDone();
+    }
+
+    public void render(ReceiptJob job) {
+        ocrServiceProvider.get().render(job.getOcrJob());
+    }
+
+    public void preprocess(ReceiptJob job) {
+        ocrServiceProvider.get().preprocess(job.getOcrJob());
+    }
+
+    public void recognize(ReceiptJob job) {
+        try (OcrJob ocrJob = job.getOcrJob()) {
+            ocrServiceProvider.get().recognize(ocrJob);
+        }
+    }
+
+    public void parse(ReceiptJob job) {
+        OcrResult ocrResult = job.getOcrJob().getResult();
+        job.setReceipt(rimiText2Receipt.parse(job.getSourcePdfName(), ocrResult, ocrServiceProvider.get()));
+    }
+
+    @SneakyThrows
+    public void writeAndValidate(ReceiptJob job, ValidationStatsCollector validationStatsCollector) {
+        job.getOcrJob().releaseImage();
+        Receipt receipt = job.getReceipt();
+        String receiptJson = OBJECT_WRITER.writeValueAsString(receipt);
+        Path receiptJsonPath = job.getOcrJob().getResult().cacheDir().resolve(job.getSourcePdfName() + ".json");
+        Files.writeString(receiptJsonPath, receiptJson);
+
+        boolean valid = validationExecutor.execute(validationStatsCollector, receipt);
+        receiptManifest.record(job.getSourcePdfName(),
+                               FileUtils.toHex(job.getPdfChecksum()),
+                               ocrServiceProvider.get().getOcrSettingsFingerprint(),
+                               receiptJsonPath,
+                               valid);
+        log.info("Completed");
+    }
+
+    public void failed(ReceiptJob job, Exception e) {
+        log.error("Unexpected error", e);
+        if (job.getOcrJob() != null) {
+            job.getOcrJob().close();
+            job.getOcrJob().releaseImage();
+        }
+    }
+}
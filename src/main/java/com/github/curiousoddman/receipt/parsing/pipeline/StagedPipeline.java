@@ -0,0 +1,65 @@
+package com.github.curiousoddman.receipt.parsing.pipeline;
+
+import com.github.curiousoddman.receipt.parsing.config.PipelineConfig;
+import com.github.curiousoddman.receipt.parsing.validation.ValidationStatsCollector;
+import org.slf4j.MDC;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Render, preprocess, OCR, parse and write/validate stages connected by bounded queues, each with its own threads.
+ * Cached receipts pass the first three stages without doing any work.
+ */
+public class StagedPipeline implements ReceiptPipeline {
+    private final ReceiptProcessor                receiptProcessor;
+    private final PipelineStage<ReceiptJob>       renderStage;
+    private final List<PipelineStage<ReceiptJob>> stages;
+
+    public StagedPipeline(ReceiptProcessor receiptProcessor, PipelineConfig pipelineConfig, ValidationStatsCollector validationStatsCollector) {
+        this.receiptProcessor = receiptProcessor;
+        int capacity = pipelineConfig.getQueueCapacity();
+        PipelineStage<ReceiptJob> writeStage = stage("write", pipelineConfig.getWriteThreads(), capacity,
+                                                     job -> receiptProcessor.writeAndValidate(job, validationStatsCollector), null);
+        PipelineStage<ReceiptJob> parseStage = stage("parse", pipelineConfig.getParseThreads(), capacity, receiptProcessor::parse, writeStage);
+        PipelineStage<ReceiptJob> ocrStage = stage("ocr", pipelineConfig.getOcrThreads(), capacity, receiptProcessor::recognize, parseStage);
+        PipelineStage<ReceiptJob> preprocessStage = stage("preprocess", pipelineConfig.getPreprocessThreads(), capacity, receiptProcessor::preprocess, ocrStage);
+        renderStage = stage("render", pipelineConfig.getRenderThreads(), capacity, job -> {
+            receiptProcessor.startOcr(job);
+            receiptProcessor.render(job);
+        }, preprocessStage);
+        stages = List.of(renderStage, preprocessStage, ocrStage, parseStage, writeStage);
+    }
+
+    @Override
+    public void submit(Path pdfFile) {
+        ReceiptJob job = new ReceiptJob(pdfFile);
+        if (receiptProcessor.accept(job)) {
+            renderStage.put(job);
+        }
+    }
+
+    @Override
+    public void awaitCompletion() {
+        for (PipelineStage<ReceiptJob> stage : stages) {
+            stage.awaitCompletion();
+        }
+    }
+
+    private PipelineStage<ReceiptJob> stage(String name, int threads, int capacity, Consumer<ReceiptJob> step, PipelineStage<ReceiptJob> next) {
+        return new PipelineStage<>(name, threads, capacity, job -> {
+            MDC.put("file", job.getSourcePdfName());
+            try {
+                step.accept(job);
+                if (next != null) {
+                    next.put(job);
+                }
+            } catch (Exception e) {
+                receiptProcessor.failed(job, e);
+            } finally {
+                MDC.remove("file");
+            }
+        });
+    }
+}
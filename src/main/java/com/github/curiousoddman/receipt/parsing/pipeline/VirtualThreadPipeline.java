@@ -0,0 +1,115 @@
+package com.github.curiousoddman.receipt.parsing.pipeline;
+
+import com.github.curiousoddman.receipt.parsing.config.PipelineConfig;
+import com.github.curiousoddman.receipt.parsing.validation.ValidationStatsCollector;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Every receipt runs on its own virtual thread, which does the file I/O and cache reads. Rendering, OpenCV and
+ * Tesseract work is handed to a platform thread pool sized to the cores, so thousands of cached receipts can be
+ * in flight without starving the CPU bound work. Cache misses keep a full page in memory from rendering until
+ * parsing, so only as many of them as there are CPU threads are past the cache lookup at once.
+ */
+@Slf4j
+public class VirtualThreadPipeline implements ReceiptPipeline {
+    private final ReceiptProcessor         receiptProcessor;
+    private final ValidationStatsCollector validationStatsCollector;
+    private final ExecutorService          virtualThreads = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService          cpuExecutor;
+    private final Semaphore                inFlight;
+    private final Semaphore                cacheMisses;
+
+    public VirtualThreadPipeline(ReceiptProcessor receiptProcessor, PipelineConfig pipelineConfig, ValidationStatsCollector validationStatsCollector) {
+        this.receiptProcessor = receiptProcessor;
+        this.validationStatsCollector = validationStatsCollector;
+        this.inFlight = new Semaphore(pipelineConfig.getMaxInFlight());
+        this.cacheMisses = new Semaphore(pipelineConfig.getCpuThreads());
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.cpuExecutor = Executors.newFixedThreadPool(pipelineConfig.getCpuThreads(), r -> new Thread(r, "cpu-" + threadNumber.getAndIncrement()));
+    }
+
+    @Override
+    public void submit(Path pdfFile) {
+        inFlight.acquireUninterruptibly();
+        try {
+            virtualThreads.submit(() -> {
+                try {
+                    process(new ReceiptJob(pdfFile));
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public void awaitCompletion() {
+        virtualThreads.shutdown();
+        while (!virtualThreads.awaitTermination(60, TimeUnit.SECONDS)) {
+            log.info("Still running...");
+        }
+        cpuExecutor.shutdown();
+    }
+
+    private void process(ReceiptJob job) {
+        MDC.put("file", job.getSourcePdfName());
+        try {
+            if (!receiptProcessor.accept(job)) {
+                return;
+            }
+            receiptProcessor.startOcr(job);
+            if (!receiptProcessor.isOcrDone(job)) {
+                cacheMisses.acquireUninterruptibly();
+                try {
+                    // One task, so a rendered page never waits in the CPU queue behind other receipts
+                    onCpu(job, j -> {
+                        receiptProcessor.render(j);
+                        receiptProcessor.preprocess(j);
+                        receiptProcessor.recognize(j);
+                    });
+                    // Parsing can re-OCR regions of the receipt
+                    onCpu(job, receiptProcessor::parse);
+                } finally {
+                    cacheMisses.release();
+                }
+            } else {
+                receiptProcessor.recognize(job);
+                onCpu(job, receiptProcessor::parse);
+            }
+            receiptProcessor.writeAndValidate(job, validationStatsCollector);
+        } catch (Exception e) {
+            receiptProcessor.failed(job, e);
+        } finally {
+            MDC.remove("file");
+        }
+    }
+
+    private void onCpu(ReceiptJob job, Consumer<ReceiptJob> step) throws Exception {
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        Future<?> future = cpuExecutor.submit(() -> {
+            MDC.setContextMap(mdc);
+            try {
+                step.accept(job);
+            } finally {
+                MDC.clear();
+            }
+        });
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.github.curiousoddman.receipt.parsing.tuning;
+
+import com.github.curiousoddman.receipt.parsing.config.PreprocessingConfig;
+import com.github.curiousoddman.receipt.parsing.config.TuningConfig;
+import com.github.curiousoddman.receipt.parsing.model.OriginFile;
+import com.github.curiousoddman.receipt.parsing.model.Receipt;
+import com.github.curiousoddman.receipt.parsing.ocr.*;
+import com.github.curiousoddman.receipt.parsing.parsing.receipt.rimi.RimiText2Receipt;
+import com.github.curiousoddman.receipt.parsing.utils.ImageUtils;
+import com.github.curiousoddman.receipt.parsing.utils.PathsUtils;
+import com.github.curiousoddman.receipt.parsing.validation.ValidationExecutor;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.opencv.core.Mat;
+import org.springframework.beans.BeanUtils;
+import org.springframework.stereotype.Component;
+
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Finds the preprocessing threshold that makes the most receipts pass validation. Every sampled receipt is rendered
+ * once, then each threshold variant is preprocessed, OCRed, parsed and validated on a fork-join pool. The pass rate
+ * and timings per threshold are written to a CSV report.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ThresholdSweep {
+    private final TuningConfig        tuningConfig;
+    private final PreprocessingConfig preprocessingConfig;
+    private final PathsUtils          pathsUtils;
+    private final OcrServiceProvider  ocrServiceProvider;
+    private final RimiText2Receipt    rimiText2Receipt;
+    private final ValidationExecutor  validationExecutor;
+
+    @SneakyThrows
+    public void run() {
+        Files.createDirectories(pathsUtils.getThresholdSweepImagesDir());
+        List<Path> sample = getSample();
+        Map<Integer, ImagePreprocessor> preprocessors = new TreeMap<>();
+        for (int threshold = tuningConfig.getThresholdFrom(); threshold <= tuningConfig.getThresholdTo(); threshold += tuningConfig.getThresholdStep()) {
+            preprocessors.put(threshold, new ImagePreprocessor(withThreshold(threshold)));
+        }
+        log.info("Sweeping {} thresholds over {} receipts", preprocessors.size(), sample.size());
+
+        ForkJoinPool pool = new ForkJoinPool(tuningConfig.getParallelism());
+        List<SampleImage> images = List.of();
+        try {
+            images = pool.submit(() -> sample.parallelStream().map(this::render).toList()).get();
+            List<SampleImage> renderedImages = images;
+            List<Trial> trials = pool.submit(() -> preprocessors
+                    .keySet()
+                    .stream()
+                    .flatMap(threshold -> renderedImages.stream().map(image -> Map.entry(threshold, image)))
+                    .toList()
+                    .parallelStream()
+                    .map(task -> runTrial(task.getKey(), preprocessors.get(task.getKey()), task.getValue()))
+                    .toList()
+            ).get();
+            writeReport(trials);
+        } finally {
+            pool.shutdown();
+            images.forEach(image -> image.grayMat().release());
+        }
+        preprocessors.forEach((threshold, preprocessor) -> log.info("Threshold {} preprocessing: {}", threshold, preprocessor.getTimings()));
+    }
+
+    @SneakyThrows
+    private List<Path> getSample() {
+        List<Path> pdfFiles;
+        try (Stream<Path> files = Files.list(pathsUtils.getPdfInputDir())) {
+            pdfFiles = files.filter(PathsUtils::isPdfFile).sorted().toList();
+        }
+        int sampleSize = Math.min(tuningConfig.getSampleSize(), pdfFiles.size());
+        if (sampleSize == 0) {
+            return List.of();
+        }
+        // Spread over the whole directory rather than taking only the oldest receipts
+        double step = (double) pdfFiles.size() / sampleSize;
+        return IntStream.range(0, sampleSize).mapToObj(i -> pdfFiles.get((int) (i * step))).toList();
+    }
+
+    private PreprocessingConfig withThreshold(int threshold) {
+        PreprocessingConfig config = new PreprocessingConfig();
+        BeanUtils.copyProperties(preprocessingConfig, config);
+        config.setThresholdMode(PreprocessingConfig.ThresholdMode.GLOBAL);
+        config.setThreshold(threshold);
+        return config;
+    }
+
+    private SampleImage render(Path pdfFile) {
+        Mat grayMat = ImageUtils.toGrayMat(ImageUtils.renderPdf(pdfFile));
+        Path renderedImage = pathsUtils.getThresholdSweepImagesDir().resolve(pdfFile.getFileName() + ".tiff");
+        ImageUtils.saveImage(grayMat, renderedImage.toAbsolutePath().toString());
+        return new SampleImage(pdfFile, renderedImage, grayMat);
+    }
+
+    /**
+     * Preprocesses, OCRs and validates one receipt with one threshold. The preprocessed image is written next to the
+     * rendered one, so debug output and Tesseract input names point at a real file.
+     */
+    private Trial runTrial(int threshold, ImagePreprocessor preprocessor, SampleImage image) {
+        String fileName = image.pdfFile().getFileName().toString();
+        // Region results of threshold variants are never looked up again, keep them out of the region cache
+        OcrService ocrService = ocrServiceProvider.getWithoutRegionCache();
+        Path preprocessedImage = pathsUtils.getThresholdSweepImagesDir().resolve(fileName + "." + threshold + ".preprocessed.tiff");
+        Mat preprocessed = preprocessor.process(image.grayMat());
+        // The session owns the preprocessed Mat and releases it when closed
+        OcrImageSession imageSession = OcrImageSession.of(preprocessedImage, null, OcrImagePage.of(preprocessed));
+        long ocrNanos = 0;
+        long parseNanos = 0;
+        boolean valid = false;
+        try {
+            ImageUtils.saveImage(preprocessed, preprocessedImage.toAbsolutePath().toString());
+            long start = System.nanoTime();
+            OcrResult ocrResult = ocrService.doMyOCR(OcrConfig.builder(imageSession).build(), new OriginFile(image.pdfFile(), image.renderedImage(), preprocessedImage));
+            ocrNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            Receipt receipt = rimiText2Receipt.parse(fileName, ocrResult, ocrService);
+            parseNanos = System.nanoTime() - start;
+            valid = validationExecutor.isValid(receipt);
+        } catch (Exception e) {
+            log.warn("Threshold {} failed on {}: {}", threshold, fileName, e.getMessage());
+        } finally {
+            imageSession.close();
+        }
+        return new Trial(threshold, valid, ocrNanos, parseNanos);
+    }
+
+    @SneakyThrows
+    private void writeReport(List<Trial> trials) {
+        Map<Integer, List<Trial>> trialsByThreshold = new TreeMap<>();
+        for (Trial trial : trials) {
+            trialsByThreshold.computeIfAbsent(trial.threshold(), k -> new ArrayList<>()).add(trial);
+        }
+        Path reportPath = pathsUtils.getThresholdSweepReportPath();
+        CSVFormat format = CSVFormat.DEFAULT
+                .builder()
+                .setHeader("threshold", "receipts", "passed", "pass_rate", "avg_ocr_ms", "avg_parse_ms")
+                .build();
+        try (Writer writer = Files.newBufferedWriter(reportPath);
+             CSVPrinter printer = new CSVPrinter(writer, format)) {
+            for (Map.Entry<Integer, List<Trial>> entry : trialsByThreshold.entrySet()) {
+                List<Trial> thresholdTrials = entry.getValue();
+                long passed = thresholdTrials.stream().filter(Trial::valid).count();
+                double passRate = (double) passed / thresholdTrials.size();
+                double avgOcrMs = thresholdTrials.stream().mapToLong(Trial::ocrNanos).average().orElse(0) / 1e6;
+                double avgParseMs = thresholdTrials.stream().mapToLong(Trial::parseNanos).average().orElse(0) / 1e6;
+                printer.printRecord(entry.getKey(),
+                                    thresholdTrials.size(),
+                                    passed,
+                                    String.format(Locale.ROOT, "%.3f", passRate),
+                                    String.format(Locale.ROOT, "%.1f", avgOcrMs),
+                                    String.format(Locale.ROOT, "%.1f", avgParseMs));
+                log.info("Threshold {}: {}/{} valid, OCR {} ms, parse {} ms",
+                         entry.getKey(),
+                         passed,
+                         thresholdTrials.size(),
+                         Math.round(avgOcrMs),
+                         Math.round(avgParseMs));
+            }
+        }
+        log.info("Threshold sweep report written to {}", reportPath.toAbsolutePath());
+    }
+
+    private record SampleImage(Path pdfFile,
+                               Path renderedImage,
+                               Mat grayMat) {
+
+    }
+
+    private record Trial(int threshold,
+                         boolean valid,
+                         long ocrNanos,
+                         long parseNanos) {
+
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.curiousoddman.receipt.parsing.utils;
+
+import lombok.SneakyThrows;
+import lombok.experimental.UtilityClass;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+@UtilityClass
+public class FileUtils {
+    @SneakyThrows
+    public byte[] sha256(Path file) {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = inputStream.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    public String toHex(byte[] bytes) {
+        return HexFormat.of().formatHex(bytes);
+    }
+}
@@ -1,9 +1,13 @@
 package com.github.curiousoddman.receipt.parsing.utils;
 
-import lombok.Data;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import net.sourceforge.tess4j.util.ImageIOHelper;
+import nu.pattern.OpenCV;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
@@ -11,22 +15,28 @@ import org.opencv.imgproc.Imgproc;
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.WritableRaster;
 import java.io.File;
-import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
-import static org.opencv.highgui.HighGui.toBufferedImage;
-import static org.opencv.imgcodecs.Imgcodecs.IMREAD_GRAYSCALE;
-import static org.opencv.imgproc.Imgproc.THRESH_BINARY;
-
 @Slf4j
 public class ImageUtils {
+    public static final int RENDER_DPI = 300;
 
+    /**
+     * Extracts and loads the OpenCV native library on first use, runs without OCR cache misses never pay for it.
+     */
+    public static void loadOpenCv() {
+        OpenCvLoader.load();
+    }
 
     public static Mat loadImage(String imagePath, int config) {
+        loadOpenCv();
         return Imgcodecs.imread(imagePath, config);
     }
 
@@ -34,65 +44,55 @@ public class ImageUtils {
         Imgcodecs.imwrite(targetPath, imageMatrix);
     }
 
+    /**
+     * Converts an image rendered in memory to an 8-bit grayscale Mat, with the same weights imread uses for
+     * grayscale reads of an RGB image.
+     */
+    public static Mat toGrayMat(BufferedImage renderedImage) {
+        loadOpenCv();
+        BufferedImage bgrImage = toBgrImage(renderedImage);
+        Mat bgrMat = new Mat(bgrImage.getHeight(), bgrImage.getWidth(), CvType.CV_8UC3);
+        bgrMat.put(0, 0, ((DataBufferByte) bgrImage.getRaster().getDataBuffer()).getData());
+        Mat grayMat = new Mat();
+        Imgproc.cvtColor(bgrMat, grayMat, Imgproc.COLOR_BGR2GRAY);
+        bgrMat.release();
+        return grayMat;
+    }
+
+    /**
+     * Renders the first page of the PDF like Tesseract's PDF to TIFF conversion did: 300 DPI, 8 bits per channel.
+     * Only the first page was ever preprocessed, as OpenCV reads the first page of a multipage TIFF.
+     */
     @SneakyThrows
-    public static void doImagePreprocessing(Path sourceImage, Path targetImage) {
-        doImagePreprocessing(sourceImage, targetImage, 0);
-    }
-
-    @SneakyThrows
-    public static void doImagePreprocessing(Path sourceImage, Path targetImage, int blankPixelsBetweenRows) {
-        Mat sourceMat = loadImage(sourceImage.toAbsolutePath().toString(), IMREAD_GRAYSCALE);
-        //saveImage(sourceMat, imagePath + ".grayscale.tiff");
-        Mat dstMat = new Mat(sourceMat.rows(), sourceMat.cols(), sourceMat.type());
-        Imgproc.threshold(sourceMat,
-                          dstMat,
-                          190,      // 180
-                          255,
-                          THRESH_BINARY);       // THRESH_BINARY
-
-        if (blankPixelsBetweenRows == 0) {
-            saveImage(dstMat, targetImage.toAbsolutePath().toString());
-        } else {
-            BufferedImage bufferedImage = (BufferedImage) toBufferedImage(dstMat);
-            BufferedImage transformedImage = addSpaceBetweenLines(bufferedImage, targetImage, blankPixelsBetweenRows);
-            ImageIO.write(transformedImage, "tiff", targetImage.toFile());
+    public static BufferedImage renderPdf(Path pdfFile) {
+        try (PDDocument document = PDDocument.load(pdfFile.toFile())) {
+            return new PDFRenderer(document).renderImageWithDPI(0, RENDER_DPI, ImageType.BGR);
         }
     }
 
-    @SneakyThrows
-    public static BufferedImage addSpaceBetweenLines(BufferedImage image, Path targetImage, int blankPixelsBetweenRows) {
-        int height = image.getHeight();
-        int width = image.getWidth();
-        List<Line> lines = getLines(image, targetImage, height, width);
-        if (lines.size() == 1) {
+    private static BufferedImage toBgrImage(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
             return image;
         }
-        int additionalHeight = lines.size() * blankPixelsBetweenRows;
-        BufferedImage newImage = new BufferedImage(width, height + additionalHeight, image.getType());
-        Graphics2D g2d = newImage.createGraphics();
-        g2d.setBackground(Color.WHITE);
-        g2d.clearRect(0, 0, width, height + additionalHeight);
-        for (int i = 0; i < lines.size(); i++) {
-            Line line = lines.get(i);
-            drawImage(image, line, width, g2d, i, blankPixelsBetweenRows);
-        }
+        BufferedImage bgrImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g2d = bgrImage.createGraphics();
+        g2d.drawImage(image, 0, 0, null);
         g2d.dispose();
-        return newImage;
+        return bgrImage;
     }
 
-    @SneakyThrows
     public static BufferedImage getImageWithLineWithMostBlackPixels(BufferedImage image) {
-        int height = image.getHeight();
         int width = image.getWidth();
-        List<Line> lines = getLines(image, null, height, width);
+        int[] blackPixelsPerRow = countBlackPixelsPerRow(image);
+        List<Line> lines = getLines(blackPixelsPerRow, width);
         if (lines.size() == 1) {
             return image;
         }
         Line lineWithMostBlackPixels = lines.get(0);
-        int countOfBlackPixels = countBlackPixels(image, lineWithMostBlackPixels, width);
+        int countOfBlackPixels = countBlackPixels(blackPixelsPerRow, lineWithMostBlackPixels);
         for (int i = 1; i < lines.size(); i++) {
             Line currentLine = lines.get(i);
-            int countOfCurrentLineBlackPixels = countBlackPixels(image, currentLine, width);
+            int countOfCurrentLineBlackPixels = countBlackPixels(blackPixelsPerRow, currentLine);
             if (countOfBlackPixels < countOfCurrentLineBlackPixels) {
                 countOfBlackPixels = countOfCurrentLineBlackPixels;
                 lineWithMostBlackPixels = currentLine;
@@ -102,28 +102,62 @@ public class ImageUtils {
         return image.getSubimage(0, lineWithMostBlackPixels.yFrom, width, lineWithMostBlackPixels.height());
     }
 
-    private static int countBlackPixels(BufferedImage image, Line line, int width) {
+    private static int countBlackPixels(int[] blackPixelsPerRow, Line line) {
         int count = 0;
         for (int y = line.yFrom; y <= line.yTo; y++) {
-            for (int x = 0; x < width; x++) {
-                if (isBlackPixel(image.getRGB(x, y))) {
-                    ++count;
+            count += blackPixelsPerRow[y];
+        }
+        return count;
+    }
+
+    /**
+     * Black pixel count of every row. 8-bit grayscale images, which is what preprocessing produces, are read straight
+     * from the raster, other image types go through their color model.
+     */
+    private static int[] countBlackPixelsPerRow(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] blackPixelsPerRow = new int[height];
+        WritableRaster raster = image.getRaster();
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY && raster.getSampleModel() instanceof ComponentSampleModel sampleModel) {
+            byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+            int scanlineStride = sampleModel.getScanlineStride();
+            // Sub images share the raster of their parent, shifted by the sample model translation
+            int offset = raster.getDataBuffer().getOffset()
+                    + sampleModel.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+            for (int y = 0; y < height; y++) {
+                int rowStart = offset + y * scanlineStride;
+                int count = 0;
+                for (int i = rowStart; i < rowStart + width; i++) {
+                    if (data[i] == 0) {
+                        count++;
+                    }
                 }
+                blackPixelsPerRow[y] = count;
+            }
+        } else {
+            int[] rowData = new int[width];
+            for (int y = 0; y < height; y++) {
+                image.getRGB(0, y, width, 1, rowData, 0, width);
+                int count = 0;
+                for (int pixel : rowData) {
+                    if (isBlackPixel(pixel)) {
+                        count++;
+                    }
+                }
+                blackPixelsPerRow[y] = count;
             }
         }
-        return count;
+        return blackPixelsPerRow;
     }
 
-    private static List<Line> getLines(BufferedImage image, Path targetImage, int height, int width) throws IOException {
+    private static List<Line> getLines(int[] blackPixelsPerRow, int width) {
         List<Line> lines = new ArrayList<>();
-        StringBuilder sb = new StringBuilder();
-
         int lineRowFrom = 0;
         boolean isLineStarted = false;
-        for (int row = 0; row < height; row++) {
-            int[] rowData = new int[width];
-            BlackWhitePixelStats blackWhitePixelRowStats = getBlackWhitePixelRowStats(image.getRGB(0, row, width, 1, rowData, 0, 0));
-            if (blackWhitePixelRowStats.isAllWhite()) {
+        for (int row = 0; row < blackPixelsPerRow.length; row++) {
+            boolean isAllWhite = blackPixelsPerRow[row] == 0 && width > 0;
+            if (isAllWhite) {
                 if (isLineStarted) {
                     lines.add(new Line(lineRowFrom, row - 1));
                     isLineStarted = false;
@@ -131,20 +165,11 @@ public class ImageUtils {
                 lineRowFrom = row + 1;
             } else {
                 isLineStarted = true;
-                sb.append(row).append(": ").append(blackWhitePixelRowStats).append('\n');
             }
         }
-        if (targetImage != null) {
-            Files.writeString(targetImage.getParent().resolve("pixel_colors.txt"), sb.toString());
-        }
         return lines;
     }
 
-    private static void drawImage(BufferedImage image, Line line, int width, Graphics2D g2d, int i, int blankPixelsBetweenRows) {
-        BufferedImage subimage = image.getSubimage(0, line.yFrom(), width, line.height());
-        g2d.drawImage(subimage, 0, line.yFrom() + i * blankPixelsBetweenRows, width, line.height(), null);
-    }
-
     private record Line(int yFrom, int yTo) {
 
         public int height() {
@@ -152,25 +177,6 @@ public class ImageUtils {
         }
     }
 
-    private static BlackWhitePixelStats getBlackWhitePixelRowStats(int[] pixelsColor) {
-        BlackWhitePixelStats stats = new BlackWhitePixelStats();
-        boolean isPreviousPixelBlack = false;
-        for (int i = 0; i < pixelsColor.length; i++) {
-            int pixelColor = pixelsColor[i];
-            boolean isPixelBlack = isBlackPixel(pixelColor);
-            if (isPreviousPixelBlack != isPixelBlack) {
-                isPreviousPixelBlack = isPixelBlack;
-                stats.getChangeLocation().add(i);
-            }
-            if (isPixelBlack) {
-                stats.incBlack();
-            } else {
-                stats.incWhite();
-            }
-        }
-        return stats;
-    }
-
     private static boolean isBlackPixel(int pixel) {
         return (pixel & 0x00FFFFFF) == 0;
     }
@@ -179,35 +185,6 @@ public class ImageUtils {
         return (image.getRGB(x, y) & 0x00FFFFFF) == 0;
     }
 
-    @Data
-    private static class BlackWhitePixelStats {
-        private int           blackCount;
-        private int           whiteCount;
-        private List<Integer> changeLocation = new ArrayList<>();
-
-        public void incBlack() {
-            ++blackCount;
-        }
-
-        public void incWhite() {
-            ++whiteCount;
-        }
-
-        public boolean isAllWhite() {
-            return blackCount == 0 && whiteCount > 0;
-        }
-
-        @Override
-        public String toString() {
-            return '{' +
-                    "black=" + blackCount +
-                    ", white=" + whiteCount +
-                    ", changes=" + changeLocation.size() +
-                    ", chgLocs=" + changeLocation +
-                    '}';
-        }
-    }
-
     @SneakyThrows
     public static File getImageFile(File inputFile) {
         return ImageIOHelper.getImageFile(inputFile);
@@ -226,4 +203,15 @@ public class ImageUtils {
         g2d.dispose();
         ImageIO.write(img, "tiff", rectangledFileName.toFile());
     }
+
+    private static class OpenCvLoader {
+        static {
+            log.info("Loading OpenCV native library");
+            OpenCV.loadLocally();
+        }
+
+        static void load() {
+            // Loaded by the class initializer
+        }
+    }
 }
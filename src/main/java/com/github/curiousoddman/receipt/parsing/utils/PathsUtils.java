@@ -23,6 +23,18 @@ public class PathsUtils {
         return getCachesRoot().resolve("validation-result.json");
     }
 
+    public Path getManifestPath() {
+        return getCachesRoot().resolve("manifest.json");
+    }
+
+    public Path getThresholdSweepReportPath() {
+        return getCachesRoot().resolve("threshold-sweep.csv");
+    }
+
+    public Path getThresholdSweepImagesDir() {
+        return getCachesRoot().resolve("threshold-sweep");
+    }
+
     public Path getIgnoreFilePath() {
         return Path.of(pathsConfig.getIgnoreFile());
     }
@@ -1,5 +1,6 @@
 package com.github.curiousoddman.receipt.parsing.validation;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.github.curiousoddman.receipt.parsing.model.Receipt;
 import com.github.curiousoddman.receipt.parsing.utils.JsonUtils;
 import lombok.RequiredArgsConstructor;
@@ -9,18 +10,25 @@ import org.springframework.stereotype.Component;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 @RequiredArgsConstructor
 public class ValidationExecutor {
+    /**
+     * Bump when a validator change should make incremental runs validate cached receipts again.
+     */
+    public static final int VALIDATOR_VERSION = 1;
+
     private final List<ReceiptValidator> receiptValidators;
     private final Map<String, Object>    resultMap = new ConcurrentHashMap<>();
 
-    public void execute(ValidationStatsCollector validationStatsCollector, Receipt receipt) {
+    public boolean execute(ValidationStatsCollector validationStatsCollector, Receipt receipt) {
         List<ValidationResult> validationResult = new ArrayList<>();
         try {
             for (ReceiptValidator receiptValidator : receiptValidators) {
@@ -29,6 +37,7 @@ public class ValidationExecutor {
             if (validationResult.stream().allMatch(ValidationResult::isSuccess)) {
                 validationStatsCollector.recordSuccess();
                 resultMap.put(receipt.getFileName(), "SUCCESS");
+                return true;
             } else {
                 validationStatsCollector.recordFailure(receipt, validationResult);
                 resultMap.put(receipt.getFileName(), new Error("FAIL", getErrorsList(validationResult)));
@@ -37,6 +46,21 @@ public class ValidationExecutor {
             validationStatsCollector.recordFailure(receipt, List.of(ValidationResult.failure(ValidationExecutor.class, e)));
             resultMap.put(receipt.getFileName(), new Error("FAIL", getErrorsList(validationResult)));
         }
+        return false;
+    }
+
+    /**
+     * Whether the receipt passes every validator, without recording the result.
+     */
+    public boolean isValid(Receipt receipt) {
+        try {
+            return receiptValidators
+                    .stream()
+                    .map(receiptValidator -> receiptValidator.validate(receipt))
+                    .allMatch(ValidationResult::isSuccess);
+        } catch (Exception e) {
+            return false;
+        }
     }
 
     private static List<String> getErrorsList(List<ValidationResult> validationResult) {
@@ -49,9 +73,29 @@ public class ValidationExecutor {
     }
 
     @SneakyThrows
-    public void saveResult(Path path) {
-        String json = JsonUtils.OBJECT_WRITER.writeValueAsString(resultMap);
-        Files.writeString(path, json);
+    public synchronized void saveResult(Path path) {
+        writeAtomically(path, new TreeMap<>(resultMap));
+    }
+
+    /**
+     * Updates results of the receipts validated in this run and keeps the results of all other receipts in the file.
+     */
+    @SneakyThrows
+    public synchronized void mergeResult(Path path) {
+        Map<String, Object> merged = new TreeMap<>();
+        if (Files.exists(path)) {
+            merged.putAll(JsonUtils.OBJECT_MAPPER.readValue(path.toFile(), new TypeReference<Map<String, Object>>() {
+            }));
+        }
+        merged.putAll(resultMap);
+        writeAtomically(path, merged);
+    }
+
+    @SneakyThrows
+    private static void writeAtomically(Path path, Map<String, Object> result) {
+        Path tempFile = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.writeString(tempFile, JsonUtils.OBJECT_WRITER.writeValueAsString(result));
+        Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
 
     private record Error(String header, List<String> errors) {
@@ -0,0 +1,99 @@
+package com.github.curiousoddman.receipt.playground;
+
+import com.github.curiousoddman.receipt.parsing.ocr.OcrCache;
+import com.github.curiousoddman.receipt.parsing.ocr.OcrCacheEntry;
+import com.github.curiousoddman.receipt.parsing.ocr.tsv.TsvParser;
+import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.*;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Compares retained memory per receipt of the {@link OcrTsvResult} object tree and {@link ColumnarOcrTsvResult}
+ * for every OCR cache entry. Object sizes are estimated for a 64-bit JVM with compressed oops.
+ */
+@Slf4j
+public class OcrTsvMemoryReport {
+    private static final int HEADER    = 12;
+    private static final int REFERENCE = 4;
+
+    @SneakyThrows
+    public static void main(String[] args) {
+        Path cacheDir = Path.of(args.length > 0 ? args[0] : "../caches/cache");
+        TsvParser tsvParser = new TsvParser();
+        List<Path> entryFiles;
+        try (Stream<Path> files = Files.walk(cacheDir)) {
+            entryFiles = files.filter(file -> file.getFileName().toString().equals(OcrCache.OCR_FILE)).toList();
+        }
+
+        long treeTotal = 0;
+        long columnarTotal = 0;
+        int receipts = 0;
+        for (Path entryFile : entryFiles) {
+            Optional<OcrCacheEntry> entry = OcrCacheEntry.read(entryFile);
+            if (entry.isEmpty()) {
+                continue;
+            }
+            // The tree is built from Tesseract TSV text as the pipeline used to, so it keeps that text as well
+            ColumnarOcrTsvResult columns = entry.get().columns();
+            long treeBytes = estimate(tsvParser.parse(columns.toTsv()));
+            long columnarBytes = columns.getSizeInBytes();
+            treeTotal += treeBytes;
+            columnarTotal += columnarBytes;
+            receipts++;
+            log.info("{}: tree {} bytes, columnar {} bytes", entryFile.getParent().getFileName(), treeBytes, columnarBytes);
+        }
+        if (receipts > 0) {
+            log.info("{} receipts, average per receipt: tree {} bytes, columnar {} bytes",
+                     receipts,
+                     treeTotal / receipts,
+                     columnarTotal / receipts);
+        }
+    }
+
+    private static long estimate(OcrTsvResult document) {
+        long size = object(3 * REFERENCE) + string(document.getTsvFileContents()) + list(document.getPages().size());
+        for (OcrResultPage page : document.getPages()) {
+            size += object(REFERENCE + 5 * Integer.BYTES + REFERENCE) + list(page.getBlocks().size());
+            for (OcrResultBlock block : page.getBlocks()) {
+                size += object(REFERENCE + 5 * Integer.BYTES + REFERENCE) + list(block.getParagraphs().size());
+                for (OcrResultParagraph paragraph : block.getParagraphs()) {
+                    size += object(REFERENCE + 5 * Integer.BYTES + REFERENCE) + list(paragraph.getLines().size());
+                    for (OcrResultLine line : paragraph.getLines()) {
+                        size += object(REFERENCE + 5 * Integer.BYTES + 3 * REFERENCE) + list(line.getWords().size());
+                        for (OcrResultWord word : line.getWords()) {
+                            size += object(REFERENCE + 5 * Integer.BYTES + Float.BYTES + REFERENCE) + string(word.getText());
+                        }
+                    }
+                }
+            }
+        }
+        return size;
+    }
+
+    private static long object(int fieldBytes) {
+        return align(HEADER + fieldBytes);
+    }
+
+    private static long list(int size) {
+        // Unmodifiable view, ArrayList and its backing array
+        return object(REFERENCE * 2) + object(Integer.BYTES * 2 + REFERENCE) + align(16 + (long) size * REFERENCE);
+    }
+
+    private static long string(String text) {
+        if (text == null) {
+            return 0;
+        }
+        boolean latin1 = text.chars().allMatch(c -> c < 256);
+        return object(Integer.BYTES + 2 + REFERENCE) + align(16 + (long) text.length() * (latin1 ? 1 : 2));
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
@@ -1,6 +1,7 @@
 package com.github.curiousoddman.receipt.playground;
 
-import com.github.curiousoddman.receipt.parsing.utils.ImageUtils;
+import com.github.curiousoddman.receipt.parsing.config.PreprocessingConfig;
+import com.github.curiousoddman.receipt.parsing.ocr.ImagePreprocessor;
 import nu.pattern.OpenCV;
 
 import java.nio.file.Path;
@@ -10,6 +11,6 @@ public class PreprocessImageMain {
         OpenCV.loadLocally();
         var source = Path.of("W:\\Programming\\git\\caches\\cache\\2-214693\\2-214693.pdf.tiff");
         var target = Path.of("W:\\Programming\\git\\caches\\cache\\2-214693\\2-214693.pdf.preprocessed_test.tiff");
-        ImageUtils.doImagePreprocessing(source, target);
+        new ImagePreprocessor(new PreprocessingConfig()).process(source, target);
     }
 }
@@ -1,12 +1,15 @@
 package com.github.curiousoddman.receipt.playground;
 
 import com.github.curiousoddman.receipt.parsing.config.DebugConfig;
+import com.github.curiousoddman.receipt.parsing.config.OcrEngineConfig;
 import com.github.curiousoddman.receipt.parsing.config.PathsConfig;
+import com.github.curiousoddman.receipt.parsing.config.PreprocessingConfig;
 import com.github.curiousoddman.receipt.parsing.model.OriginFile;
+import com.github.curiousoddman.receipt.parsing.ocr.ImagePreprocessor;
 import com.github.curiousoddman.receipt.parsing.ocr.OcrConfig;
+import com.github.curiousoddman.receipt.parsing.ocr.OcrEnginePool;
 import com.github.curiousoddman.receipt.parsing.ocr.OcrService;
 import com.github.curiousoddman.receipt.parsing.ocr.tsv.TsvParser;
-import com.github.curiousoddman.receipt.parsing.utils.ImageUtils;
 import com.github.curiousoddman.receipt.parsing.utils.PathsUtils;
 import lombok.SneakyThrows;
 import nu.pattern.OpenCV;
@@ -22,24 +25,33 @@ public class RawOcrVsIncreasedLineSpacing {
         var source = Path.of("W:\\Programming\\git\\caches\\cache\\2-214693\\2-214693.pdf.tiff");
         var targetExtraSpace = Path.of("W:\\Programming\\git\\caches\\cache\\2-214693\\2-214693.pdf.extra-space.tiff");
         var targetNoExtraSpace = Path.of("W:\\Programming\\git\\caches\\cache\\2-214693\\2-214693.pdf.no-extra-space.tiff");
-        ImageUtils.doImagePreprocessing(source, targetExtraSpace, 30);
-        ImageUtils.doImagePreprocessing(source, targetNoExtraSpace);
+        PreprocessingConfig extraSpaceConfig = new PreprocessingConfig();
+        extraSpaceConfig.setLineSpacing(30);
+        new ImagePreprocessor(extraSpaceConfig).process(source, targetExtraSpace);
+        new ImagePreprocessor(new PreprocessingConfig()).process(source, targetNoExtraSpace);
 
         PathsConfig pathsConfig = new PathsConfig();
         pathsConfig.setCachesRoot(Files.createTempDirectory("RawOcrVsIncreasedLineSpacing").toAbsolutePath().toString());
-        OcrService ocrService = new OcrService(
-                new PathsUtils(pathsConfig),
-                new TsvParser(),
-                new DebugConfig()
-        );
-
-        OriginFile originFile = new OriginFile(source, targetExtraSpace, targetExtraSpace);
-        String extraSpace = ocrService.doMyOCR(OcrConfig.builder(targetExtraSpace).build(), originFile).plainText();
-        Files.writeString(source.getParent().resolve("extra-space.txt"), extraSpace);
-
-        OriginFile originFile2 = new OriginFile(source, targetNoExtraSpace, targetNoExtraSpace);
-        String noExtraSpace = ocrService.doMyOCR(OcrConfig.builder(targetNoExtraSpace).build(), originFile2).plainText();
-        Files.writeString(source.getParent().resolve("no-extra-space.txt"), noExtraSpace);
+        PathsUtils pathsUtils = new PathsUtils(pathsConfig);
+        OcrEngineConfig ocrEngineConfig = new OcrEngineConfig();
+        try (OcrEnginePool ocrEnginePool = new OcrEnginePool(pathsUtils.getTesseractModelPath(), ocrEngineConfig)) {
+            OcrService ocrService = new OcrService(
+                    pathsUtils,
+                    new TsvParser(),
+                    new DebugConfig(),
+                    ocrEnginePool,
+                    ocrEngineConfig,
+                    new PreprocessingConfig()
+            );
+
+            OriginFile originFile = new OriginFile(source, targetExtraSpace, targetExtraSpace);
+            String extraSpace = ocrService.doMyOCR(OcrConfig.builder(targetExtraSpace).build(), originFile).plainText();
+            Files.writeString(source.getParent().resolve("extra-space.txt"), extraSpace);
+
+            OriginFile originFile2 = new OriginFile(source, targetNoExtraSpace, targetNoExtraSpace);
+            String noExtraSpace = ocrService.doMyOCR(OcrConfig.builder(targetNoExtraSpace).build(), originFile2).plainText();
+            Files.writeString(source.getParent().resolve("no-extra-space.txt"), noExtraSpace);
+        }
     }
 }
 
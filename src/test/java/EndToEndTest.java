@@ -1,9 +1,13 @@
 import com.github.curiousoddman.receipt.parsing.config.DebugConfig;
+import com.github.curiousoddman.receipt.parsing.config.OcrEngineConfig;
 import com.github.curiousoddman.receipt.parsing.config.PathsConfig;
+import com.github.curiousoddman.receipt.parsing.config.PipelineConfig;
+import com.github.curiousoddman.receipt.parsing.config.PreprocessingConfig;
 import com.github.curiousoddman.receipt.parsing.model.Receipt;
 import com.github.curiousoddman.receipt.parsing.ocr.OcrResult;
 import com.github.curiousoddman.receipt.parsing.ocr.OcrServiceProvider;
 import com.github.curiousoddman.receipt.parsing.ocr.tsv.TsvParser;
+import com.github.curiousoddman.receipt.parsing.parsing.receipt.rimi.ReceiptNumberExtractionChain;
 import com.github.curiousoddman.receipt.parsing.parsing.receipt.rimi.RimiText2Receipt;
 import com.github.curiousoddman.receipt.parsing.utils.PathsUtils;
 import com.github.curiousoddman.receipt.parsing.validation.ItemNumbersValidator;
@@ -11,7 +15,8 @@ import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import nu.pattern.OpenCV;
 import org.junit.jupiter.api.BeforeEach;
-import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.skyscreamer.jsonassert.JSONAssert;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -26,10 +31,14 @@ import static org.mockito.Mockito.when;
 @SpringBootTest(classes = {
         OcrServiceProvider.class,
         RimiText2Receipt.class,
+        ReceiptNumberExtractionChain.class,
         TsvParser.class,
         ItemNumbersValidator.class,
         PathsUtils.class,
-        DebugConfig.class
+        DebugConfig.class,
+        OcrEngineConfig.class,
+        PipelineConfig.class,
+        PreprocessingConfig.class
 })
 @Slf4j
 public class EndToEndTest {
@@ -40,6 +49,8 @@ public class EndToEndTest {
     private OcrServiceProvider ocrServiceProvider;
     @Autowired
     private RimiText2Receipt   rimiText2Receipt;
+    @Autowired
+    private PipelineConfig     pipelineConfig;
     @MockBean
     PathsConfig pathsConfig;
 
@@ -51,10 +62,12 @@ public class EndToEndTest {
         when(pathsConfig.getCachesRoot()).thenReturn(tempDirectory.toAbsolutePath().toString());
     }
 
-    @Test
+    @ParameterizedTest(name = "parallelFieldExtraction={0}")
+    @ValueSource(booleans = {false, true})
     @SneakyThrows
-    void test() {
+    void test(boolean parallelFieldExtraction) {
         OpenCV.loadLocally();
+        pipelineConfig.setParallelFieldExtraction(parallelFieldExtraction);
         String sourcePdfName = INPUT_FILE.toFile().getName();
         OcrResult ocrResult = ocrServiceProvider.get().getCachedOrDoOcr(INPUT_FILE);
         Receipt receipt = rimiText2Receipt.parse(sourcePdfName, ocrResult, ocrServiceProvider.get());
@@ -0,0 +1,60 @@
+import com.github.curiousoddman.receipt.parsing.ocr.tsv.TsvParser;
+import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.ColumnarOcrTsvResult;
+import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.OcrResultLine;
+import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.OcrResultWord;
+import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.OcrTsvResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TsvParserTest {
+    private static final String TSV = """
+            1\t1\t0\t0\t0\t0\t0\t0\t1441\t2000\t-1\t
+            2\t1\t1\t0\t0\t0\t10\t20\t1400\t100\t-1\t
+            3\t1\t1\t1\t0\t0\t10\t20\t1400\t100\t-1\t
+            4\t1\t1\t1\t1\t0\t10\t20\t1400\t40\t-1\t
+            5\t1\t1\t1\t1\t1\t10\t20\t200\t40\t96.541763\tSamaksai
+            5\t1\t1\t1\t1\t2\t220\t20\t80\t40\t91.5\tEUR
+            5\t1\t1\t1\t1\t3\t1200\t20\t100\t40\t88\t56,15
+            4\t1\t1\t1\t2\t0\t10\t70\t1400\t40\t-1\t
+            5\t1\t1\t1\t2\t1\t10\t70\t300\t40\t-1\t
+            """;
+
+    private final TsvParser tsvParser = new TsvParser();
+
+    @Test
+    void buildsDocumentTreeInRowOrder() {
+        OcrTsvResult result = tsvParser.parse(TSV);
+
+        assertEquals(TSV, result.getTsvFileContents());
+        List<OcrResultLine> lines = result.getLines();
+        assertEquals(2, lines.size());
+        assertEquals("Samaksai EUR 56,15", lines.get(0).getText());
+
+        OcrResultWord amount = lines.get(0).getWords().get(2);
+        assertEquals(3, amount.getWordNum());
+        assertEquals(1200, amount.getX());
+        assertEquals(88f, amount.getConfidence());
+        assertSame(lines.get(0), amount.getParentLine());
+        assertEquals(96.541763f, lines.get(0).getWords().get(0).getConfidence(), 1e-5);
+
+        assertNull(lines.get(1).getWords().get(0).getText());
+        assertEquals(-1f, lines.get(1).getWords().get(0).getConfidence());
+    }
+
+    @Test
+    void columnarFormKeepsAllRows() {
+        ColumnarOcrTsvResult columnar = tsvParser.parseColumnar(TSV);
+
+        assertEquals(9, columnar.getRowCount());
+        assertEquals(TSV.replace("96.541763", "96.54176"), columnar.toTsv());
+
+        OcrTsvResult restored = columnar.toOcrTsvResult();
+        assertEquals(tsvParser.parse(TSV).toString(), restored.toString());
+        assertEquals("Samaksai EUR 56,15", restored.getLines().get(0).getText());
+        assertEquals(1200, restored.getLines().get(0).getWords().get(2).getX());
+        assertNull(restored.getLines().get(1).getWords().get(0).getText());
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.curiousoddman.receipt.parsing.parsing.receipt.rimi;
+
+import com.github.curiousoddman.receipt.parsing.ocr.OcrConfig;
+import com.github.curiousoddman.receipt.parsing.ocr.OcrImageSession;
+import com.github.curiousoddman.receipt.parsing.ocr.OcrService;
+import com.github.curiousoddman.receipt.parsing.ocr.tsv.TsvParser;
+import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.OcrResultLine;
+import com.github.curiousoddman.receipt.parsing.ocr.tsv.document.OcrResultWord;
+import com.github.curiousoddman.receipt.parsing.parsing.NumberOcrResult;
+import com.github.curiousoddman.receipt.parsing.parsing.receipt.rimi.NumberExtractionStrategy.Attempt;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Optional;
+
+import static com.github.curiousoddman.receipt.parsing.utils.Patterns.MONEY_AMOUNT;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ReceiptNumberExtractionChainTest {
+    private final ReceiptNumberExtractionChain chain = new ReceiptNumberExtractionChain(new TsvParser());
+
+    @Test
+    void correctsUnambiguousConfusions() {
+        assertEquals("10.51", ReceiptNumberExtractionChain.correctOcrConfusions("1O,5l"));
+        assertEquals("-0.50", ReceiptNumberExtractionChain.correctOcrConfusions("-o.5O"));
+        assertEquals("11.00", ReceiptNumberExtractionChain.correctOcrConfusions("I|.00"));
+    }
+
+    @Test
+    void rejectsCleanAmbiguousAndUnknownWords() {
+        assertNull(ReceiptNumberExtractionChain.correctOcrConfusions("12,34"));
+        assertNull(ReceiptNumberExtractionChain.correctOcrConfusions("1B,50"));
+        assertNull(ReceiptNumberExtractionChain.correctOcrConfusions("12.3'4"));
+        assertNull(ReceiptNumberExtractionChain.correctOcrConfusions("EUR"));
+    }
+
+    @Test
+    void confusionsAreLeftToReOcrWithoutExpectedValue() throws Exception {
+        assertTrue(chain.correctOcrConfusions(attempt("1O,50", 95, null)).isEmpty());
+
+        OcrService ocrService = mock(OcrService.class);
+        when(ocrService.doOCR(any(OcrConfig.class))).thenReturn("16,50");
+        RimiContext context = mock(RimiContext.class);
+        when(context.getTesseract()).thenReturn(ocrService);
+        when(context.getImageSession()).thenReturn(mock(OcrImageSession.class));
+
+        NumberOcrResult result = chain.parse(word("1O,50", 95), 0, MONEY_AMOUNT, context);
+        assertEquals(new BigDecimal("16.50"), result.getNumber().value());
+        verify(ocrService).doOCR(any(OcrConfig.class));
+    }
+
+    @Test
+    void confusionsMustMatchExpectedValue() {
+        assertEquals(new BigDecimal("10.50"), value(chain.correctOcrConfusions(attempt("1O,50", 30, "10.50"))));
+
+        Attempt mismatch = attempt("1O,50", 95, "13.50");
+        assertTrue(chain.correctOcrConfusions(mismatch).isEmpty());
+        assertEquals("ocr confusions: 10.50 (expected 13.50)", mismatch.triedValues().get(0));
+    }
+
+    @Test
+    void expectedValueRecoversLostDecimalSeparator() {
+        assertEquals(new BigDecimal("18.50"), value(chain.matchExpectedValue(attempt("1850", 90, "18.50"))));
+    }
+
+    @Test
+    void expectedValueIgnoresLeadingZeros() {
+        assertEquals(new BigDecimal("0.99"), value(chain.matchExpectedValue(attempt("099", 90, "0.99"))));
+    }
+
+    @Test
+    void expectedValueKeepsDiscountSign() {
+        assertEquals(new BigDecimal("-0.36"), value(chain.matchExpectedValue(attempt("-O36", 90, "-0.36"))));
+    }
+
+    @Test
+    void expectedValueRejectsMisplacedSeparator() {
+        assertTrue(chain.matchExpectedValue(attempt("12.9", 90, "1.29")).isEmpty());
+        assertTrue(chain.matchExpectedValue(attempt("1.2.9", 90, "1.29")).isEmpty());
+    }
+
+    @Test
+    void expectedValueRejectsOtherDigits() {
+        Attempt attempt = attempt("1860", 90, "18.50");
+        assertTrue(chain.matchExpectedValue(attempt).isEmpty());
+        assertEquals("arithmetic: expected 18.50", attempt.triedValues().get(0));
+        assertTrue(chain.matchExpectedValue(attempt("1850", 90, null)).isEmpty());
+    }
+
+    private static OcrResultWord word(String text, float confidence) {
+        return new OcrResultWord(OcrResultLine.dummy(text), 1, 10, 20, 100, 40, confidence, text);
+    }
+
+    private static Attempt attempt(String text, float confidence, String expectedValue) {
+        return new Attempt(word(text, confidence),
+                           0,
+                           MONEY_AMOUNT,
+                           expectedValue == null ? null : new BigDecimal(expectedValue),
+                           null,
+                           new ArrayList<>());
+    }
+
+    private static BigDecimal value(Optional<NumberOcrResult> result) {
+        return result.orElseThrow().getNumber().value();
+    }
+}